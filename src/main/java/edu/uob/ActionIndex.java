@@ -0,0 +1,112 @@
+package edu.uob;
+
+import java.util.List;
+
+import edu.uob.ActionException.NoActionFoundException;
+import edu.uob.ActionException.TooManyActionsException;
+
+/**
+* Precompiled lookup from a parsed command to the one action it names.
+*
+* <p>For every vocabulary ID the index keeps two bitsets over all actions: the actions that have it as a
+* trigger and the actions that need it as a subject. The candidates for a command are the AND of the
+* bitsets of its triggers and subjects, so shared triggers such as "open" cost a few word-wide operations
+* however many actions use them. The remaining candidates only need their sizes compared, and the scan
+* stops as soon as a second match shows the command is ambiguous.
+*/
+public final class ActionIndex {
+    private final GameAction[] actions;
+    private final int[] triggerCounts;
+    private final int[] neededCounts;
+    private final long[][] triggerPostings;
+    private final long[][] subjectPostings;
+    private final int words;
+
+    /**
+    * @param actions Every action, already bound to {@code vocabulary}.
+    */
+    public ActionIndex(List<GameAction> actions, Vocabulary vocabulary) {
+        this.actions = actions.toArray(new GameAction[0]);
+        this.words = (this.actions.length + Long.SIZE - 1) / Long.SIZE;
+        this.triggerCounts = new int[this.actions.length];
+        this.neededCounts = new int[this.actions.length];
+        this.triggerPostings = new long[vocabulary.size()][];
+        this.subjectPostings = new long[vocabulary.size()][];
+        for (int i = 0; i < this.actions.length; i++) {
+            int[] triggerIds = this.actions[i].getTriggerIds();
+            int[] neededIds = this.actions[i].getNeededIds();
+            triggerCounts[i] = triggerIds.length;
+            neededCounts[i] = neededIds.length;
+            post(triggerPostings, triggerIds, i);
+            post(subjectPostings, neededIds, i);
+        }
+    }
+
+    private void post(long[][] postings, int[] ids, int action) {
+        for (int id : ids) {
+            if (postings[id] == null) {
+                postings[id] = new long[words];
+            }
+            postings[id][action / Long.SIZE] |= 1L << action;
+        }
+    }
+
+    /**
+    * Finds the action whose triggers include every given trigger and whose needed entities include every
+    * given subject.
+    *
+    * @throws NoActionFoundException If no action matches, including when no subject is given.
+    * @throws TooManyActionsException If more than one action matches.
+    */
+    public GameAction match(int[] triggerIds, int[] subjectIds) throws NoActionFoundException, TooManyActionsException {
+        if (triggerIds.length == 0 || subjectIds.length == 0) {
+            throw new NoActionFoundException();
+        }
+        long[] candidates = triggerPostings[triggerIds[0]];
+        if (candidates == null) {
+            throw new NoActionFoundException();
+        }
+        candidates = candidates.clone();
+        if (!intersect(candidates, triggerPostings, triggerIds, 1) || !intersect(candidates, subjectPostings, subjectIds, 0)) {
+            throw new NoActionFoundException();
+        }
+        GameAction found = null;
+        for (int word = 0; word < words; word++) {
+            long bits = candidates[word];
+            while (bits != 0) {
+                int action = word * Long.SIZE + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                if (triggerIds.length > triggerCounts[action] || subjectIds.length > neededCounts[action]) {
+                    continue;
+                }
+                if (found != null) {
+                    throw new TooManyActionsException();
+                }
+                found = actions[action];
+            }
+        }
+        if (found == null) {
+            throw new NoActionFoundException();
+        }
+        return found;
+    }
+
+    /** ANDs the postings of {@code ids[from..]} into the candidates, returning false once none are left. */
+    private boolean intersect(long[] candidates, long[][] postings, int[] ids, int from) {
+        for (int i = from; i < ids.length; i++) {
+            long[] posting = postings[ids[i]];
+            if (posting == null) {
+                return false;
+            }
+            long any = 0;
+            for (int word = 0; word < words; word++) {
+                candidates[word] &= posting[word];
+                any |= candidates[word];
+            }
+            if (any == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,156 @@
+package edu.uob;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.IntStream;
+
+import edu.uob.ActionException.NoActionFoundException;
+import edu.uob.ActionException.TooManyActionsException;
+
+/**
+* Everything the game derives from an actions file: the trigger map, the {@link Vocabulary} commands are
+* parsed against and the {@link ActionIndex} they are matched with. A set is built completely before it is
+* published and never changes afterwards, so reloading the actions file swaps in a whole new set and a
+* command parsed against one set is always matched against that same set.
+*/
+public final class ActionSet {
+    private static final int ACTION_CHUNK = 1024;
+
+    private final List<GameAction> actionList;
+    private final Map<String, HashSet<GameAction>> actions;
+    private final Vocabulary vocabulary;
+    private final ActionIndex actionIndex;
+
+    private ActionSet(List<GameAction> actionList, Map<String, HashSet<GameAction>> actions, Vocabulary vocabulary,
+                      ActionIndex actionIndex) {
+        this.actionList = actionList;
+        this.actions = actions;
+        this.vocabulary = vocabulary;
+        this.actionIndex = actionIndex;
+    }
+
+    /**
+    * Maps, interns and compiles the actions against the entities of a loaded game. Only reads the names
+    * in the game's world, so it can run while commands are being handled.
+    */
+    public static ActionSet build(Game game, List<GameAction> actions, StartupTimings timings) {
+        List<GameAction> actionList = List.copyOf(actions);
+        long start = System.nanoTime();
+        Map<String, HashSet<GameAction>> triggers = mapTriggers(actionList);
+        timings.record("triggers", start);
+        start = System.nanoTime();
+        Vocabulary vocabulary = new Vocabulary(triggers.keySet(), game.getSubjectNames(), getActionItemNames(actionList));
+        timings.record("vocabulary", start);
+        start = System.nanoTime();
+        chunks(actionList).forEach(chunk -> {
+            for (GameAction action : chunk(actionList, chunk)) {
+                action.bind(vocabulary);
+                action.compile(game);
+            }
+        });
+        ActionIndex actionIndex = new ActionIndex(actionList, vocabulary);
+        timings.record("index", start);
+        return new ActionSet(actionList, triggers, vocabulary, actionIndex);
+    }
+
+    /** Splits the actions into chunks of {@link #ACTION_CHUNK} for work that can run on each in parallel. */
+    private static IntStream chunks(List<GameAction> actionList) {
+        return IntStream.range(0, (actionList.size() + ACTION_CHUNK - 1) / ACTION_CHUNK).parallel();
+    }
+
+    private static List<GameAction> chunk(List<GameAction> actionList, int chunk) {
+        return actionList.subList(chunk * ACTION_CHUNK, Math.min(actionList.size(), (chunk + 1) * ACTION_CHUNK));
+    }
+
+    /**
+    * Maps every trigger to its actions. Each chunk of actions is mapped on its own thread and the chunk
+    * maps are merged afterwards, so large action packs use every core.
+    */
+    private static Map<String, HashSet<GameAction>> mapTriggers(List<GameAction> actionList) {
+        List<HashMap<String, HashSet<GameAction>>> chunkMaps = chunks(actionList)
+                .mapToObj(chunk -> {
+                    HashMap<String, HashSet<GameAction>> chunkMap = new HashMap<>();
+                    for (GameAction action : chunk(actionList, chunk)) {
+                        addActionToMap(chunkMap, action.getNames(), action);
+                    }
+                    return chunkMap;
+                })
+                .toList();
+        HashMap<String, HashSet<GameAction>> actions = new HashMap<>();
+        for (HashMap<String, HashSet<GameAction>> chunkMap : chunkMaps) {
+            for (Map.Entry<String, HashSet<GameAction>> trigger : chunkMap.entrySet()) {
+                actions.computeIfAbsent(trigger.getKey(), phase -> new HashSet<>()).addAll(trigger.getValue());
+            }
+        }
+        return actions;
+    }
+
+    private static void addActionToMap(HashMap<String, HashSet<GameAction>> actions, String[] phases, GameAction newAction) {
+        for (String phase : phases) {
+            if (actions.containsKey(phase)) {
+                actions.get(phase).add(newAction);
+                continue;
+            }
+            HashSet<GameAction> actionsHashSet = new HashSet<>();
+            actionsHashSet.add(newAction);
+            actions.put(phase, actionsHashSet);
+        }
+    }
+
+    private static List<String> getActionItemNames(List<GameAction> actionList) {
+        List<String> items = new ArrayList<>();
+        for (GameAction action : actionList) {
+            items.addAll(action.getItemNames());
+        }
+        return items;
+    }
+
+    /**
+    * The position in the file, counting from 1, of the first action without a trigger or a subject, which
+    * no command could ever match; 0 if every action can be matched.
+    */
+    public int findUnmatchableAction() {
+        for (int i = 0; i < actionList.size(); i++) {
+            if (actionList.get(i).getTriggerIds().length == 0 || actionList.get(i).getNeededIds().length == 0) {
+                return i + 1;
+            }
+        }
+        return 0;
+    }
+
+    /** The needed, consumed or produced names that are not in the game, which make their actions unusable. */
+    public Set<String> getUnknownItems() {
+        Set<String> unknown = new TreeSet<>();
+        for (GameAction action : actionList) {
+            unknown.addAll(action.getUnknownItems());
+        }
+        return unknown;
+    }
+
+    public GameAction match(int[] actionIds, int[] subjectIds) throws TooManyActionsException, NoActionFoundException {
+        return actionIndex.match(actionIds, subjectIds);
+    }
+
+    public Vocabulary getVocabulary() {
+        return vocabulary;
+    }
+
+    public Set<GameAction> getActions(String trigger) {
+        Set<GameAction> triggered = actions.get(trigger);
+        return triggered == null ? Set.of() : Collections.unmodifiableSet(triggered);
+    }
+
+    public String[] getActionNames() {
+        return actions.keySet().toArray(new String[0]);
+    }
+
+    public int size() {
+        return actionList.size();
+    }
+}
@@ -0,0 +1,57 @@
+package edu.uob;
+
+/**
+* One needed, consumed or produced entity of a {@link GameAction}, classified once when the game loads
+* instead of every time the action runs. Health, paths and entities never change kind, so the step keeps
+* the location or entity it resolved to and execution can switch on {@link #getType()}.
+*/
+public final class ActionStep {
+    private final StepType type;
+    private final String name;
+    private final LocationEntity location;
+    private final GameEntity entity;
+
+    private ActionStep(StepType type, String name, LocationEntity location, GameEntity entity) {
+        this.type = type;
+        this.name = name;
+        this.location = location;
+        this.entity = entity;
+    }
+
+    /**
+    * Classifies an entity name of an action the same way execution used to, health first and locations
+    * before the entities placed in them.
+    */
+    public static ActionStep compile(Game game, String name) {
+        if (CmdType.parse(name) == CmdType.HEALTH) {
+            return new ActionStep(StepType.HEALTH, name, null, null);
+        }
+        LocationEntity location = game.getLocationByName(name);
+        if (location != null) {
+            return new ActionStep(StepType.PATH, name, location, null);
+        }
+        GameEntity entity = game.getEntityByName(name);
+        if (entity != null) {
+            return new ActionStep(StepType.ENTITY, name, null, entity);
+        }
+        return new ActionStep(StepType.UNKNOWN, name, null, null);
+    }
+
+    public StepType getType() {
+        return type;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /** The location a {@link StepType#PATH} step opens or closes. */
+    public LocationEntity getLocation() {
+        return location;
+    }
+
+    /** The entity an {@link StepType#ENTITY} step moves. */
+    public GameEntity getEntity() {
+        return entity;
+    }
+}
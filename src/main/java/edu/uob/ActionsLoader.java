@@ -0,0 +1,99 @@
+package edu.uob;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+* Streaming loader for the actions file. It pulls one element at a time and hands each action on as soon
+* as its closing tag is read, so only the action being built is held in memory however large the file is.
+* Elements are recognised by name rather than by position, so the file's whitespace layout does not matter.
+*
+* <p>Trigger phrases and entity names are lower-cased, as the game matches them. A missing section reads
+* as an empty one and a missing narration as an empty message.
+*/
+public final class ActionsLoader {
+    private static final XMLInputFactory FACTORY = createFactory();
+
+    private ActionsLoader() {
+    }
+
+    private static XMLInputFactory createFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        return factory;
+    }
+
+    public static List<GameAction> load(File actionsFile) throws IOException, XMLStreamException {
+        List<GameAction> actions = new ArrayList<>();
+        try (InputStream input = new BufferedInputStream(new FileInputStream(actionsFile))) {
+            load(input, actions::add);
+        }
+        return actions;
+    }
+
+    /** Reads every action from the stream, passing each one to {@code sink} in file order. */
+    public static void load(InputStream input, Consumer<GameAction> sink) throws XMLStreamException {
+        XMLStreamReader reader = FACTORY.createXMLStreamReader(input);
+        try {
+            while (reader.hasNext()) {
+                if (reader.next() == XMLStreamConstants.START_ELEMENT && reader.getLocalName().equals("action")) {
+                    sink.accept(readAction(reader));
+                }
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static GameAction readAction(XMLStreamReader reader) throws XMLStreamException {
+        List<String> triggers = new ArrayList<>();
+        List<String> subjects = new ArrayList<>();
+        List<String> consumed = new ArrayList<>();
+        List<String> produced = new ArrayList<>();
+        List<String> section = null;
+        String message = "";
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.END_ELEMENT && reader.getLocalName().equals("action")) {
+                break;
+            }
+            if (event != XMLStreamConstants.START_ELEMENT) {
+                continue;
+            }
+            switch (reader.getLocalName()) {
+                case "triggers" -> section = triggers;
+                case "subjects" -> section = subjects;
+                case "consumed" -> section = consumed;
+                case "produced" -> section = produced;
+                case "narration" -> message = reader.getElementText();
+                case "keyphrase" -> addText(reader, section == triggers ? triggers : null);
+                case "entity" -> addText(reader, section == triggers ? null : section);
+                default -> { }
+            }
+        }
+        return new GameAction(toArray(triggers), toArray(subjects), toArray(consumed), toArray(produced), message);
+    }
+
+    private static void addText(XMLStreamReader reader, List<String> section) throws XMLStreamException {
+        String text = reader.getElementText().toLowerCase();
+        if (section != null) {
+            section.add(text);
+        }
+    }
+
+    private static String[] toArray(List<String> items) {
+        return items.toArray(new String[0]);
+    }
+}
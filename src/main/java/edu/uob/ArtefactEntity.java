@@ -1,7 +1,7 @@
 package edu.uob;
 
 public class ArtefactEntity extends GameEntity {
-    public ArtefactEntity(String name, String description) {
-        super(name, description);
+    ArtefactEntity(WorldStore store, int handle) {
+        super(store, handle);
     }
 }
@@ -0,0 +1,60 @@
+package edu.uob;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+* Read-only {@link CharSequence} view over a range of bytes, one char per byte, so a command can be
+* tokenized and looked up in the {@link Vocabulary} while it is still sitting in a network buffer.
+*
+* <p>Only ASCII maps onto the same chars as the decoded text; other bytes come out as chars that no
+* trigger or entity name contains, so they simply never match. {@link #toString()} decodes UTF-8 properly.
+*/
+public final class AsciiText implements CharSequence {
+    private final ByteBuffer buffer;
+    private final int offset;
+    private final int length;
+
+    public AsciiText(ByteBuffer buffer, int offset, int length) {
+        this.buffer = buffer;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    /** A view of the remaining bytes of the buffer. */
+    public static AsciiText of(ByteBuffer buffer) {
+        return new AsciiText(buffer, buffer.position(), buffer.remaining());
+    }
+
+    /** Lower-cases the ASCII letters in {@code buffer[start, end)} in place. */
+    public static void foldCase(ByteBuffer buffer, int start, int end) {
+        for (int i = start; i < end; i++) {
+            byte b = buffer.get(i);
+            if (b >= 'A' && b <= 'Z') {
+                buffer.put(i, (byte) (b + ('a' - 'A')));
+            }
+        }
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        return (char) (buffer.get(offset + index) & 0xFF);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return new AsciiText(buffer, offset + start, end - start);
+    }
+
+    @Override
+    public String toString() {
+        byte[] bytes = new byte[length];
+        buffer.get(offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
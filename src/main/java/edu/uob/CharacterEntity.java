@@ -1,7 +1,7 @@
 package edu.uob;
 
 public class CharacterEntity extends GameEntity {
-    public CharacterEntity(String name, String description) {
-        super(name, description);
+    CharacterEntity(WorldStore store, int handle) {
+        super(store, handle);
     }
 }
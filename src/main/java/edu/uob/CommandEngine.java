@@ -0,0 +1,16 @@
+package edu.uob;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+import edu.uob.ServerException.MailboxFullException;
+
+/**
+* Decides on which thread, and in which order, already parsed commands are executed. The supplied
+* command performs the execution itself; engines only schedule it.
+*/
+public interface CommandEngine {
+    CompletableFuture<String> submit(String playerName, Supplier<String> command) throws MailboxFullException;
+
+    void shutdown();
+}
@@ -0,0 +1,387 @@
+package edu.uob;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+
+import edu.uob.GameException.MalformedEntitiesFileException;
+
+/**
+* Streaming loader for the subset of DOT that entities files use. It tokenizes the file as it reads it and
+* adds every location, entity and path to a {@link WorldStore} straight away. The store is the game state
+* itself, so no graph of the file and no second copy of the world are ever built.
+*
+* <p>Sections are read by position, as the graphviz parser was: the first subgraph of the document holds
+* one cluster per location and the second holds the paths. In a cluster the first node is the location
+* and each nested subgraph is a group of artefacts, furniture or characters. Default attribute statements,
+* graph attributes and comments are skipped wherever they appear.
+*/
+public final class EntitiesLoader {
+    private static final int LOCATIONS = 0;
+    private static final int PATHS = 1;
+
+    private final Reader reader;
+    private final char[] buffer;
+    private final WorldStore world;
+    private int position;
+    private int limit;
+    private int line;
+    private String pushedBack;
+    private boolean isPushedBackQuoted;
+    private boolean isQuoted;
+    private String description;
+
+    private EntitiesLoader(Reader reader) {
+        this.reader = reader;
+        this.buffer = new char[8192];
+        this.world = new WorldStore();
+        this.line = 1;
+    }
+
+    public static WorldStore load(File entitiesFile) throws IOException, GameException {
+        try (Reader reader = new InputStreamReader(new FileInputStream(entitiesFile), StandardCharsets.UTF_8)) {
+            return load(reader);
+        }
+    }
+
+    public static WorldStore load(Reader reader) throws IOException, GameException {
+        EntitiesLoader loader = new EntitiesLoader(reader);
+        loader.readGraph();
+        return loader.world;
+    }
+
+    private void readGraph() throws IOException, GameException {
+        String token = next();
+        if (isKeyword(token, "strict")) {
+            token = next();
+        }
+        if (!isKeyword(token, "digraph") && !isKeyword(token, "graph")) {
+            throw malformed();
+        }
+        token = next();
+        if (!"{".equals(token) || isQuoted) {
+            token = next();
+        }
+        expectOpen(token);
+        int section = 0;
+        while (readStatement() != null) {
+            switch (section++) {
+                case LOCATIONS -> readLocations();
+                case PATHS -> readPaths();
+                default -> skipBody();
+            }
+        }
+    }
+
+    private void readLocations() throws IOException, GameException {
+        while (readStatement() != null) {
+            readLocation();
+        }
+    }
+
+    private void readLocation() throws IOException, GameException {
+        int location = WorldStore.NONE;
+        String token;
+        while (!"}".equals(token = next()) || isQuoted) {
+            if (isSubgraph(token)) {
+                readEntityGroup(location, readSubgraphName(token));
+            } else if (isNode(token)) {
+                String name = token;
+                if (readNodeRest() && location == WorldStore.NONE) {
+                    location = world.addLocation(name.toLowerCase(), description);
+                }
+            }
+        }
+    }
+
+    private void readEntityGroup(int location, String groupName) throws IOException, GameException {
+        EntityType type = groupName == null ? null : EntityType.parse(groupName);
+        String token;
+        while (!"}".equals(token = next()) || isQuoted) {
+            if (isSubgraph(token)) {
+                readSubgraphName(token);
+                skipBody();
+            } else if (isNode(token)) {
+                String name = token;
+                if (!readNodeRest()) {
+                    continue;
+                }
+                if (location == WorldStore.NONE) {
+                    throw malformed();
+                }
+                world.addEntity(type, name.toLowerCase(), description, location);
+            }
+        }
+    }
+
+    private void readPaths() throws IOException, GameException {
+        String token;
+        while (!"}".equals(token = next()) || isQuoted) {
+            if (isSubgraph(token)) {
+                readSubgraphName(token);
+                skipBody();
+                continue;
+            }
+            if (!isNode(token)) {
+                continue;
+            }
+            String from = token.toLowerCase();
+            String arrow = next();
+            while (("->".equals(arrow) || "--".equals(arrow)) && !isQuoted) {
+                String to = requireId().toLowerCase();
+                world.addPath(from, to);
+                from = to;
+                arrow = next();
+            }
+            pushBack(arrow);
+            readNodeRest();
+        }
+    }
+
+    /**
+    * Reads statements up to the next subgraph, skipping everything else.
+    *
+    * @return The subgraph's name, "" for an anonymous one, or {@code null} at the end of the body.
+    */
+    private String readStatement() throws IOException, GameException {
+        String token;
+        while (!"}".equals(token = next()) || isQuoted) {
+            if (isSubgraph(token)) {
+                String name = readSubgraphName(token);
+                return name == null ? "" : name;
+            }
+            if (isNode(token)) {
+                readNodeRest();
+            }
+        }
+        return null;
+    }
+
+    /** Consumes a subgraph header up to its opening brace, returning its name if it has one. */
+    private String readSubgraphName(String token) throws IOException, GameException {
+        if ("{".equals(token) && !isQuoted) {
+            return null;
+        }
+        String name = next();
+        if ("{".equals(name) && !isQuoted) {
+            return null;
+        }
+        expectOpen(next());
+        return name;
+    }
+
+    private void skipBody() throws IOException, GameException {
+        int depth = 1;
+        while (depth > 0) {
+            String token = next();
+            if (isQuoted) {
+                continue;
+            }
+            if ("{".equals(token)) {
+                depth++;
+            } else if ("}".equals(token)) {
+                depth--;
+            }
+        }
+    }
+
+    private boolean isSubgraph(String token) {
+        return isKeyword(token, "subgraph") || ("{".equals(token) && !isQuoted);
+    }
+
+    /** Whether the token starts a node statement rather than punctuation or a default attribute list. */
+    private boolean isNode(String token) throws IOException, GameException {
+        if (!isQuoted && !isId(token)) {
+            return false;
+        }
+        if (isKeyword(token, "node") || isKeyword(token, "edge") || isKeyword(token, "graph")) {
+            readAttributes(next());
+            return false;
+        }
+        return true;
+    }
+
+    /**
+    * Reads what follows a node ID: an attribute list, or a graph attribute's value.
+    *
+    * @return Whether it was a node, in which case {@link #description} holds its description.
+    */
+    private boolean readNodeRest() throws IOException, GameException {
+        String token = next();
+        if ("=".equals(token) && !isQuoted) {
+            requireId();
+            return false;
+        }
+        readAttributes(token);
+        return true;
+    }
+
+    private void readAttributes(String token) throws IOException, GameException {
+        description = null;
+        while ("[".equals(token) && !isQuoted) {
+            while (!"]".equals(token = next()) || isQuoted) {
+                if (!isQuoted && !isId(token)) {
+                    continue;
+                }
+                String key = token;
+                token = next();
+                if (!"=".equals(token) || isQuoted) {
+                    pushBack(token);
+                    continue;
+                }
+                String value = requireId();
+                if (key.equals("description")) {
+                    description = value;
+                }
+            }
+            token = next();
+        }
+        pushBack(token);
+    }
+
+    private String requireId() throws IOException, GameException {
+        String token = next();
+        if (!isQuoted && !isId(token)) {
+            throw malformed();
+        }
+        return token;
+    }
+
+    private void expectOpen(String token) throws GameException {
+        if (!"{".equals(token) || isQuoted) {
+            throw malformed();
+        }
+    }
+
+    private boolean isKeyword(String token, String keyword) {
+        return !isQuoted && keyword.equalsIgnoreCase(token);
+    }
+
+    private static boolean isId(String token) {
+        return isIdChar(token.charAt(0));
+    }
+
+    private static boolean isIdChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '.' || c >= 0x80;
+    }
+
+    /** Returns the token last read by {@link #next()} so the next call reads it again. */
+    private void pushBack(String token) {
+        pushedBack = token;
+        isPushedBackQuoted = isQuoted;
+    }
+
+    private MalformedEntitiesFileException malformed() {
+        return new MalformedEntitiesFileException(line);
+    }
+
+    /**
+    * The next token: an ID, a quoted string with its quotes removed, "->", "--" or a single punctuation
+    * character. Sets {@link #isQuoted} for quoted strings, which are never punctuation.
+    *
+    * @throws MalformedEntitiesFileException At the end of the file, since a well-formed file ends with the
+    * brace that closes the graph.
+    */
+    private String next() throws IOException, GameException {
+        if (pushedBack != null) {
+            String token = pushedBack;
+            pushedBack = null;
+            isQuoted = isPushedBackQuoted;
+            return token;
+        }
+        isQuoted = false;
+        int c = skipSpaceAndComments();
+        if (c < 0) {
+            throw malformed();
+        }
+        if (c == '"') {
+            isQuoted = true;
+            return readQuoted();
+        }
+        if (isIdChar((char) c)) {
+            StringBuilder id = new StringBuilder();
+            id.append((char) c);
+            while ((c = peek()) >= 0 && isIdChar((char) c)) {
+                id.append((char) read());
+            }
+            return id.toString();
+        }
+        if (c == '-' && (peek() == '>' || peek() == '-')) {
+            return "-" + (char) read();
+        }
+        return String.valueOf((char) c);
+    }
+
+    private String readQuoted() throws IOException, GameException {
+        StringBuilder text = new StringBuilder();
+        int c;
+        while ((c = read()) != '"') {
+            if (c < 0) {
+                throw malformed();
+            }
+            if (c == '\\' && peek() == '"') {
+                c = read();
+            }
+            text.append((char) c);
+        }
+        return text.toString();
+    }
+
+    private int skipSpaceAndComments() throws IOException {
+        while (true) {
+            int c = read();
+            if (c < 0) {
+                return c;
+            }
+            if (Character.isWhitespace(c)) {
+                continue;
+            }
+            if (c == '#' || (c == '/' && peek() == '/')) {
+                while ((c = read()) >= 0 && c != '\n') {
+                    continue;
+                }
+                continue;
+            }
+            if (c == '/' && peek() == '*') {
+                read();
+                int previous = 0;
+                while ((c = read()) >= 0 && !(previous == '*' && c == '/')) {
+                    previous = c;
+                }
+                continue;
+            }
+            return c;
+        }
+    }
+
+    private int peek() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position];
+    }
+
+    private int read() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        char c = buffer[position++];
+        if (c == '\n') {
+            line++;
+        }
+        return c;
+    }
+
+    private boolean fill() throws IOException {
+        limit = reader.read(buffer, 0, buffer.length);
+        position = 0;
+        if (limit < 0) {
+            limit = 0;
+            return false;
+        }
+        return true;
+    }
+}
@@ -4,7 +4,9 @@ public enum EntityType {
     ARTEFACT,
     FURNITURE,
     CHARACTER,
-    STORAGE;
+    STORAGE,
+    LOCATION,
+    PLAYER;
 
 
     public static EntityType parse(String type) {
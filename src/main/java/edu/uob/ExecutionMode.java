@@ -0,0 +1,21 @@
+package edu.uob;
+
+public enum ExecutionMode {
+    SERIAL,
+    STRIPED,
+    QUEUED,
+    STAGED,
+    TICK;
+
+
+    public static ExecutionMode parse(String mode) {
+        return switch (mode.toUpperCase()) {
+            case "SERIAL" -> SERIAL;
+            case "STRIPED" -> STRIPED;
+            case "QUEUED" -> QUEUED;
+            case "STAGED" -> STAGED;
+            case "TICK" -> TICK;
+            default -> null;
+        };
+    }
+}
@@ -1,7 +1,7 @@
 package edu.uob;
 
 public class FurnitureEntity extends GameEntity {
-    public FurnitureEntity(String name, String description) {
-        super(name, description);
+    FurnitureEntity(WorldStore store, int handle) {
+        super(store, handle);
     }
 }
@@ -1,216 +1,122 @@
 package edu.uob;
 
-import com.alexmerz.graphviz.objects.Edge;
-import com.alexmerz.graphviz.objects.Graph;
-import com.alexmerz.graphviz.objects.Node;
-import org.w3c.dom.Element;
-import org.w3c.dom.NodeList;
-
-import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 
 import edu.uob.ActionException.TooManyActionsException;
 import edu.uob.ActionException.NoActionFoundException;
-import edu.uob.GameException.NoLocationFoundToAddPathException;
 
 public class Game {
-    HashMap<String, PlayerEntity> players;
-    HashMap<String, LocationEntity> locations;
-    HashMap<String, HashSet<GameAction>> actions;
+    ConcurrentHashMap<String, PlayerEntity> players;
     HashMap<CmdType, Command> commands;
-    HashSet<String> subjectList;
+    WorldStore world;
     Storage storeroom;
-    String entry;
+    LocationEntity start;
+    private volatile ActionSet actionSet;
+    private volatile ActionSet retiredActionSet;
 
     public Game() {
-        this.players = new HashMap<>();
-        this.locations = new HashMap<>();
-        this.actions = new HashMap<>();
-        this.subjectList = new HashSet<>();
-    }
-
-    public void initGame(List<Graph> entities, NodeList actions) throws NoLocationFoundToAddPathException {
-        createEntities(entities);
-        createActions(actions);
-        initCommands();
-    }
-
-    private void initCommands() {
-        this.commands = new HashMap<>();
-        for (CmdType cmdType : CmdType.getAllCommands()) {
-            Command command = CmdType.createCmd(cmdType);
-            this.commands.put(cmdType, command);
-        }
-    }
-
-    private void createEntities(List<Graph> entities) throws NoLocationFoundToAddPathException {
-        handleLocations(entities.get(0).getSubgraphs());
-        handlePaths(entities.get(1).getEdges());
+        this.players = new ConcurrentHashMap<>();
     }
 
-    private void handleLocations(List<Graph> locations) {
-        for (int i = 0; i < locations.size(); i++) {
-            handleLocation(locations.get(i), i);
-        }
-        if (this.storeroom == null) {
-            this.storeroom = new Storage("Storeroom", "Placeholder Storeroom");
-        }
-    }
-    private void addToSubjectList(String name) {
-        subjectList.add(name);
-    }
-
-    private void handleLocation(Graph location, int index) {
-        Node locationDetails = location.getNodes(false).get(0);
-        String name = locationDetails.getId().getId().toLowerCase();
-        String description = locationDetails.getAttribute("description");
-        addToSubjectList(name);
-        boolean isEntrance = index == 0;
-        if (isEntrance) {
-            entry = name;
-        }
-        LocationEntity newGameEntity;
-        if (EntityType.parse(name) == EntityType.STORAGE) {
-            newGameEntity = new Storage(name, description);
-        } else {
-            newGameEntity = new LocationEntity(name, description);
-        }
-        addLocationEntities(location.getSubgraphs(), newGameEntity);
-        if (newGameEntity instanceof Storage) {
-            this.storeroom = (Storage) newGameEntity;
-        } else {
-            this.locations.put(name, newGameEntity);
-        }
-    }
-
-    public LocationEntity getStartLocation() {
-        return locations.get(entry);
+    public void initGame(WorldStore world, List<GameAction> actions) {
+        initGame(world, actions, new StartupTimings());
     }
 
-    private void addLocationEntities(List<Graph> entityGroups, LocationEntity gameEntity) {
-        for (Graph entityGroup : entityGroups) {
-            EntityType entityType = EntityType.parse(entityGroup.getId().getId());
-            if (entityGroup.getNodes(false).size() == 0) {
-                continue;
-            }
-            addEntityToLocation(entityGroup, entityType, gameEntity);
-        }
+    /**
+    * Builds the game around a loaded world, which from then on is the game state itself. Records how long
+    * each phase takes in {@code timings}.
+    */
+    public void initGame(WorldStore world, List<GameAction> actions, StartupTimings timings) {
+        long start = System.nanoTime();
+        useWorld(world);
+        initCommands();
+        timings.record("world", start);
+        this.actionSet = ActionSet.build(this, actions, timings);
     }
 
-    private void addEntityToLocation(Graph entityGroup, EntityType entityType, LocationEntity gameEntity) {
-        for (Node entity : entityGroup.getNodes(false)) {
-            String entityName = entity.getId().getId().toLowerCase();
-            String entityDescription = entity.getAttribute("description");
-            addToSubjectList(entityName);
-            gameEntity.addEntity(createEntityByType(entityType, entityName, entityDescription));
-        }
+    /** The actions commands are currently parsed and matched against. */
+    public ActionSet getActionSet() {
+        return actionSet;
     }
 
-    private GameEntity createEntityByType(EntityType type, String name, String description) {
-        return switch (type) {
-            case CHARACTER -> new CharacterEntity(name, description);
-            case ARTEFACT -> new ArtefactEntity(name, description);
-            case FURNITURE -> new FurnitureEntity(name, description);
-            default -> null;
-        };
+    /**
+    * Publishes a new set of actions. The set it replaces stays matchable, so a command parsed just before
+    * the swap still finds its actions; only a command outliving two swaps finds none.
+    */
+    public synchronized void replaceActions(ActionSet newActions) {
+        this.retiredActionSet = actionSet;
+        this.actionSet = newActions;
     }
 
-    private void handlePaths(List<Edge> paths) throws NoLocationFoundToAddPathException {
-        for (Edge path : paths) {
-            Node fromLocation = path.getSource().getNode();
-            String fromName = fromLocation.getId().getId();
-            Node toLocation = path.getTarget().getNode();
-            String toName = toLocation.getId().getId();
-            addPathToLocation(fromName, toName);
-        }
+    public Vocabulary getVocabulary() {
+        return actionSet.getVocabulary();
     }
 
-    private void addPathToLocation(String location, String path) throws NoLocationFoundToAddPathException {
-        if (getLocationByName(location) == null) {
-            throw new NoLocationFoundToAddPathException(location);
-        }
-        if (getLocationByName(path) == null) {
-            throw new NoLocationFoundToAddPathException(path);
+    private void initCommands() {
+        this.commands = new HashMap<>();
+        for (CmdType cmdType : CmdType.getAllCommands()) {
+            Command command = CmdType.createCmd(cmdType);
+            this.commands.put(cmdType, command);
         }
-        locations.get(location).addPath(locations.get(path));
     }
 
-    private void createActions(NodeList actions) {
-        for (int i = 0; i < actions.getLength(); i++) {
-            if (i % 2 == 0) {
-                continue;
-            }
-            createAction((Element) actions.item(i));
+    /** Adopts a world, giving it a placeholder storeroom if the entities file had none. */
+    private void useWorld(WorldStore world) {
+        this.world = world;
+        if (world.getStoreroom() == WorldStore.NONE) {
+            world.addLocation("Storeroom", "Placeholder Storeroom");
         }
+        this.storeroom = (Storage) world.view(world.getStoreroom());
+        int startHandle = world.getStart();
+        this.start = startHandle != WorldStore.NONE && world.getKind(startHandle) == EntityType.LOCATION
+                ? (LocationEntity) world.view(startHandle) : null;
     }
 
-    private void createAction(Element action) {
-        Element triggers = (Element) action.getElementsByTagName("triggers").item(0);
-        Element subjects = (Element) action.getElementsByTagName("subjects").item(0);
-        Element consumed = (Element) action.getElementsByTagName("consumed").item(0);
-        Element produced = (Element) action.getElementsByTagName("produced").item(0);
-        Element narration = (Element) action.getElementsByTagName("narration").item(0);
-        String message = narration.getTextContent();
-        String[] phases = getPhrases(triggers);
-        String[] neededItems = getEntity(subjects);
-        String[] consumedItems = getEntity(consumed);
-        String[] producedItems = getEntity(produced);
-        GameAction newAction = new GameAction(phases, neededItems, consumedItems, producedItems, message);
-        addActionToMap(phases, newAction);
+    /** The names of every location and entity, which commands can refer to. */
+    public List<String> getSubjectNames() {
+        return world.getSubjectNames();
     }
 
-    private void addActionToMap(String[] phases, GameAction newAction) {
-        for (String phase : phases) {
-            if (actions.containsKey(phase)) {
-                actions.get(phase).add(newAction);
-                continue;
-            }
-            HashSet<GameAction> actionsHashSet = new HashSet<>();
-            actionsHashSet.add(newAction);
-            actions.put(phase, actionsHashSet);
-        }
+    public LocationEntity getStartLocation() {
+        return start;
     }
 
-    private String[] getPhrases(Element triggers) {
-        NodeList parsedPhrased = triggers.getElementsByTagName("keyphrase");
-        String[] phrases = new String[parsedPhrased.getLength()];
-        for (int i = 0; i < parsedPhrased.getLength(); i++) {
-            phrases[i] = parsedPhrased.item(i).getTextContent().toLowerCase();
-        }
-        return phrases;
+    public Storage getStoreroom() {
+        return storeroom;
     }
 
-    private String[] getEntity(Element triggers) {
-        NodeList parsedEntities = triggers.getElementsByTagName("entity");
-        String[] entities = new String[parsedEntities.getLength()];
-        for (int i = 0; i < parsedEntities.getLength(); i++) {
-            entities[i] = parsedEntities.item(i).getTextContent().toLowerCase();
+    /** The location, not counting the storeroom, with this name. */
+    public LocationEntity getLocationByName(String name) {
+        int location = world.locationOf(name);
+        if (location == WorldStore.NONE || world.getKind(location) != EntityType.LOCATION) {
+            return null;
         }
-        return entities;
+        return (LocationEntity) world.view(location);
     }
 
-    public Storage getStoreroom() {
-        return storeroom;
+    /** The artefact, furniture or character loaded under this name, wherever it is now. */
+    public GameEntity getEntityByName(String name) {
+        return world.view(world.entityOf(name));
     }
 
-    public LocationEntity getLocationByName(String name) {
-        if (!locations.containsKey(name)) {
+    /**
+    * The location, other than the storeroom, where the entity with this name lies. Looked up through the
+    * entity's container instead of scanning every location.
+    */
+    public LocationEntity findMovableEntity(String name) {
+        GameEntity entity = getEntityByName(name);
+        if (entity == null) {
             return null;
         }
-        return locations.get(name);
+        return getPlacedLocation(entity);
     }
 
-    public LocationEntity findMovableEntity(String name) {
-        for (HashMap.Entry<String, LocationEntity> set : locations.entrySet()) {
-            LocationEntity location = set.getValue();
-            boolean hasFurniture = location.hasFurnitureByName(name);
-            boolean hasArtefact = location.hasArtefactByName(name);
-            boolean hasCharacter = location.hasCharacterByName(name);
-            if (hasCharacter || hasArtefact || hasFurniture) {
-                return location;
-            }
+    /** The location, other than the storeroom, holding this entity, or {@code null}. */
+    public LocationEntity getPlacedLocation(GameEntity entity) {
+        if (entity.getContainer() instanceof LocationEntity location && location != storeroom) {
+            return location;
         }
         return null;
     }
@@ -228,41 +134,43 @@ public class Game {
         CmdType cmdType = CmdType.parse(name);
         return commands.get(cmdType);
     }
+    public Command getCommand(CmdType cmdType) {
+        return commands.get(cmdType);
+    }
     public boolean isValidSubject(String name) {
-        return subjectList.contains(name);
+        return world.locationOf(name) != WorldStore.NONE || world.entityOf(name) != WorldStore.NONE;
     }
     public PlayerEntity matchPlayerByName(String name) {
-        if (players.containsKey(name)) {
-            return players.get(name);
-        }
-        PlayerEntity newPlayer = new PlayerEntity(name, locations.get(entry));
-        players.put(name, newPlayer);
-        return newPlayer;
-    }
-
-    public GameAction matchAction(List<String> actionList, List<String> subjects) throws TooManyActionsException, NoActionFoundException {
-        List<GameAction> foundActions = checkActionList(actionList, subjects);
-        if (foundActions.size() > 1) {
-            throw new TooManyActionsException();
-        }
-        if (foundActions.isEmpty()) {
-            throw new NoActionFoundException();
-        }
-        return foundActions.get(0);
-    }
-    private List<GameAction> checkActionList(List<String> actionList, List<String> subjects) {
-        HashSet<GameAction> potentialActions = actions.get(actionList.get(0));
-        List<GameAction> foundActions = new ArrayList<>();
-        for (GameAction action : potentialActions) {
-            boolean isMatchedAction = action.isMatchedAction(actionList, subjects);
-            if (!isMatchedAction) {
-                continue;
-            }
-            foundActions.add(action);
-        }
-        return foundActions;
+        PlayerEntity player = players.get(name);
+        if (player != null) {
+            return player;
+        }
+        return players.computeIfAbsent(name, newName -> {
+            PlayerEntity newPlayer = (PlayerEntity) world.view(world.addPlayer(newName, start.handle));
+            start.addCharacter(newPlayer);
+            return newPlayer;
+        });
+    }
+
+    /**
+    * Matches IDs parsed against {@code vocabulary} with the action set that vocabulary belongs to, even
+    * if the actions have been reloaded since.
+    *
+    * @throws NoActionFoundException If that set has been retired for good.
+    */
+    public GameAction matchAction(Vocabulary vocabulary, int[] actionIds, int[] subjectIds)
+            throws TooManyActionsException, NoActionFoundException {
+        ActionSet current = actionSet;
+        if (current.getVocabulary() == vocabulary) {
+            return current.match(actionIds, subjectIds);
+        }
+        ActionSet retired = retiredActionSet;
+        if (retired != null && retired.getVocabulary() == vocabulary) {
+            return retired.match(actionIds, subjectIds);
+        }
+        throw new NoActionFoundException();
     }
     public String[] getActionNames() {
-        return actions.keySet().toArray(new String[0]);
+        return actionSet.getActionNames();
     }
 }
\ No newline at end of file
@@ -1,6 +1,8 @@
 package edu.uob;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 
 import edu.uob.ActionException.NotSufficientSubjectsException;
@@ -15,6 +17,11 @@ public class GameAction
     String[] consumedItems;
     String[] producedItems;
     String message;
+    int[] triggerIds;
+    int[] neededIds;
+    ActionStep[] neededSteps;
+    ActionStep[] consumedSteps;
+    ActionStep[] producedSteps;
     public GameAction(String[] names, String[] neededItems, String[] consumedItems, String[] producedItems, String message) {
         this.names = names.clone();
         this.neededItems = neededItems.clone();
@@ -23,14 +30,62 @@ public class GameAction
         this.message = message;
     }
 
+    /**
+    * Resolves the trigger phrases and needed entities to their IDs in the vocabulary commands are parsed
+    * against. Every name of this action must have been interned in it.
+    */
+    public void bind(Vocabulary vocabulary) {
+        this.triggerIds = toIds(vocabulary, names);
+        this.neededIds = toIds(vocabulary, neededItems);
+    }
+
+    private static int[] toIds(Vocabulary vocabulary, String[] items) {
+        int[] ids = new int[items.length];
+        for (int i = 0; i < items.length; i++) {
+            ids[i] = vocabulary.idOf(items[i]);
+        }
+        return ids;
+    }
+
+    /**
+    * Classifies every needed, consumed and produced name against the loaded world, so running the action
+    * never has to work out again whether a name is health, a path or an entity.
+    */
+    public void compile(Game game) {
+        this.neededSteps = compileSteps(game, neededItems);
+        this.consumedSteps = compileSteps(game, consumedItems);
+        this.producedSteps = compileSteps(game, producedItems);
+    }
+
+    /** The needed, consumed and produced names that {@link #compile} could not find in the game. */
+    public List<String> getUnknownItems() {
+        List<String> unknown = new ArrayList<>();
+        for (ActionStep[] steps : new ActionStep[][] {neededSteps, consumedSteps, producedSteps}) {
+            for (ActionStep step : steps) {
+                if (step.getType() == StepType.UNKNOWN) {
+                    unknown.add(step.getName());
+                }
+            }
+        }
+        return unknown;
+    }
+
+    private static ActionStep[] compileSteps(Game game, String[] items) {
+        ActionStep[] steps = new ActionStep[items.length];
+        for (int i = 0; i < items.length; i++) {
+            steps[i] = ActionStep.compile(game, items[i]);
+        }
+        return steps;
+    }
+
     public String execute(Game game, PlayerEntity player) {
         try {
             LocationEntity location = player.getCurrentLocation();
             checkExecutable(game, location, player);
-            if (consumedItems.length > 0) {
+            if (consumedSteps.length > 0) {
                 handleConsumptions(game, location, player);
             }
-            if (producedItems.length > 0) {
+            if (producedSteps.length > 0) {
                 handleProductions(game, location, player);
             }
             return getMessage();
@@ -40,8 +95,8 @@ public class GameAction
     }
     private void handleConsumptions(Game game, LocationEntity location, PlayerEntity player) throws GameOverException {
         try {
-            for (String item : consumedItems) {
-                handleConsumption(game, location, player, item);
+            for (ActionStep step : consumedSteps) {
+                handleConsumption(game, location, player, step);
             }
         } catch (HealthLevelToZeroException e) {
             dropPlayerItems(location, player);
@@ -50,30 +105,29 @@ public class GameAction
         }
     }
 
-    private void handleConsumption(Game game, LocationEntity location, PlayerEntity player, String item) throws HealthLevelToZeroException {
-        boolean isHealthCmd = CmdType.parse(item) == CmdType.HEALTH;
-        if (isHealthCmd) {
-            player.decrementHealthLevel();
-            return;
+    private void handleConsumption(Game game, LocationEntity location, PlayerEntity player, ActionStep step) throws HealthLevelToZeroException {
+        switch (step.getType()) {
+            case HEALTH -> player.decrementHealthLevel();
+            case PATH -> location.removeEntityByName(step.getName());
+            case ENTITY -> consumeEntity(game, location, player, step);
+            default -> { }
         }
-        boolean isInInventory = player.hasInventoryByName(item);
-        if (isInInventory) {
-            game.getStoreroom().addEntity(player.getInventoryByName(item));
-            return;
-        }
-        boolean isInLocation = location.isItemHereByName(item);
-        if (isInLocation) {
-            game.getStoreroom().addEntity(location.removeEntityByName(item));
+    }
+
+    private void consumeEntity(Game game, LocationEntity location, PlayerEntity player, ActionStep step) {
+        GameEntity container = step.getEntity().getContainer();
+        if (container == player) {
+            game.getStoreroom().addEntity(player.getInventoryByName(step.getName()));
             return;
         }
-        LocationEntity entityLocation = game.findMovableEntity(item);
+        LocationEntity entityLocation = container == location ? location : game.getPlacedLocation(step.getEntity());
         if (entityLocation != null) {
-            game.getStoreroom().addEntity(entityLocation.removeEntityByName(item));
+            game.getStoreroom().addEntity(entityLocation.removeEntityByName(step.getName()));
         }
     }
 
     private void dropPlayerItems(LocationEntity location, PlayerEntity player) {
-        List<ArtefactEntity> items = player.getInventories();
+        Collection<ArtefactEntity> items = player.getInventories();
         if (items.isEmpty()) {
             return;
         }
@@ -81,97 +135,127 @@ public class GameAction
     }
 
     private void handleProductions(Game game, LocationEntity location, PlayerEntity player) {
-        for (String item : producedItems) {
-            handleProduction(game, location, player, item);
+        for (ActionStep step : producedSteps) {
+            handleProduction(game, location, player, step);
         }
     }
 
-    private void handleProduction(Game game, LocationEntity location, PlayerEntity player, String item) {
-        boolean isHealthCmd = CmdType.parse(item) == CmdType.HEALTH;
-        if (isHealthCmd) {
-            player.incrementHealthLevel();
-            return;
-        }
-        LocationEntity destination = game.getLocationByName(item);
-        if (destination != null) {
-            location.addEntity(destination);
-            return;
-        }
-        boolean isInStorage = game.getStoreroom().isItemHereByName(item);
-        if (isInStorage) {
-            GameEntity entity = game.getStoreroom().removeEntityByName(item);
-            location.addEntity(entity);
-            return;
+    private void handleProduction(Game game, LocationEntity location, PlayerEntity player, ActionStep step) {
+        switch (step.getType()) {
+            case HEALTH -> player.incrementHealthLevel();
+            case PATH -> location.addEntity(step.getLocation());
+            case ENTITY -> produceEntity(game, location, step);
+            default -> { }
         }
-        LocationEntity entityLocation = game.findMovableEntity(item);
-        if (entityLocation != null) {
-            location.addEntity(entityLocation.removeEntityByName(item));
+    }
+
+    private void produceEntity(Game game, LocationEntity location, ActionStep step) {
+        GameEntity container = step.getEntity().getContainer();
+        LocationEntity source = container == game.getStoreroom() ? game.getStoreroom() : game.getPlacedLocation(step.getEntity());
+        if (source != null) {
+            location.addEntity(source.removeEntityByName(step.getName()));
         }
     }
 
     private boolean isPossessAllSubjects(LocationEntity location, PlayerEntity player) {
-        for (String item : neededItems) {
-            boolean isHealthCmd = CmdType.parse(item) == CmdType.HEALTH;
-            boolean isInInventory = player.hasInventoryByName(item);
-            boolean isInLocation = location.isItemHereByName(item);
-            if (!isHealthCmd && !isInInventory && !isInLocation) {
+        for (ActionStep step : neededSteps) {
+            if (!isAtHand(step, location, player)) {
                 return false;
             }
         }
         return true;
     }
+
+    /** Whether the step's entity is carried by the player or lies in their location. */
+    private static boolean isAtHand(ActionStep step, LocationEntity location, PlayerEntity player) {
+        return switch (step.getType()) {
+            case HEALTH -> true;
+            case ENTITY -> step.getEntity().getContainer() == player || step.getEntity().getContainer() == location;
+            default -> player.hasInventoryByName(step.getName()) || location.isItemHereByName(step.getName());
+        };
+    }
     private void checkExecutable(Game game, LocationEntity location, PlayerEntity player) throws NotSufficientArtefactException, NotSufficientSubjectsException {
         if (!isPossessAllSubjects(location, player)) {
             throw new NotSufficientArtefactException();
         }
-        if (producedItems.length == 0) {
+        if (producedSteps.length == 0) {
             return;
         }
         checkProduceable(game);
     }
     private void checkProduceable(Game game) throws NotSufficientSubjectsException {
-        boolean areProduceable = false;
-        for (String item : producedItems) {
-            boolean isProduceable = checkOneProduceable(game, item);
-            if (isProduceable) {
-                areProduceable = true;
+        for (ActionStep step : producedSteps) {
+            if (checkOneProduceable(game, step)) {
+                return;
             }
         }
-        if (!areProduceable) {
-            throw new NotSufficientSubjectsException();
-        }
+        throw new NotSufficientSubjectsException();
     }
 
-    private boolean checkOneProduceable(Game game, String item)  {
-        boolean isHealthCmd = CmdType.parse(item) == CmdType.HEALTH;
-        Storage storeroom = game.getStoreroom();
-        boolean isPath = game.getLocationByName(item) != null;
-        boolean isInStorage = storeroom.isItemHereByName(item);
-        boolean isArtefactSomewhere = game.findMovableEntity(item) != null;
-        return isHealthCmd || isPath || isInStorage || isArtefactSomewhere;
+    private boolean checkOneProduceable(Game game, ActionStep step)  {
+        return switch (step.getType()) {
+            case HEALTH, PATH -> true;
+            case ENTITY -> step.getEntity().getContainer() instanceof LocationEntity;
+            default -> false;
+        };
     }
 
-    public boolean isMatchedAction(List<String> phrases, List<String> subjects) {
-        boolean isValidNamesList = validateInTargetList(this.names, phrases);
-        boolean isValidItemList = validateInTargetList(this.neededItems, subjects);
-        return isValidItemList && isValidNamesList;
-    }
-
-    private boolean validateInTargetList(String[] targetList, List<String> givenList) {
-        if (givenList.isEmpty()) {
-            return false;
+    /**
+    * Whether running this action for the player only touches the player, their current location and the
+    * storeroom. Anything else means an entity has to be fetched from some other location, or the player
+    * may die and be sent back to the start, so the caller must hold every location lock.
+    */
+    public boolean isLocal(Game game, PlayerEntity player) {
+        LocationEntity location = player.getCurrentLocation();
+        int healthLost = 0;
+        for (ActionStep step : consumedSteps) {
+            if (step.getType() == StepType.ENTITY && !isAtHand(step, location, player)) {
+                return false;
+            }
+            if (step.getType() == StepType.HEALTH) {
+                healthLost++;
+            }
         }
-        if (givenList.size() > targetList.length) {
+        // Dying moves the player back to the start location
+        if (healthLost > 0 && healthLost >= player.getHealthLevel()) {
             return false;
         }
-        List<String> listItems = Arrays.asList(targetList);
-        for (String item : givenList) {
-            if (!listItems.contains(item.toLowerCase())) {
+        for (ActionStep step : producedSteps) {
+            if (step.getType() != StepType.ENTITY) {
+                continue;
+            }
+            GameEntity container = step.getEntity().getContainer();
+            if (container != game.getStoreroom() && container != location) {
                 return false;
             }
         }
         return true;
     }
+
+    public boolean hasSideEffects() {
+        return consumedItems.length > 0 || producedItems.length > 0;
+    }
+
+    public int[] getTriggerIds() {
+        return triggerIds;
+    }
+
+    public int[] getNeededIds() {
+        return neededIds;
+    }
+
+    public String[] getNames() {
+        return names.clone();
+    }
+
+    /** Every entity name this action refers to, whether needed, consumed or produced. */
+    public List<String> getItemNames() {
+        List<String> items = new ArrayList<>(Arrays.asList(neededItems));
+        items.addAll(Arrays.asList(consumedItems));
+        items.addAll(Arrays.asList(producedItems));
+        return items;
+    }
+
     public String getMessage() {
         return message;
     }
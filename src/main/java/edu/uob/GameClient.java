@@ -10,7 +10,9 @@ import java.net.Socket;
 /**
 * This is the sample client for you to connect to your game server.
 *
-* <p>Input are taken from stdin and output goes to stdout.
+* <p>Input are taken from stdin and output goes to stdout. Pass {@code --session} after the username
+* to keep a single connection open for all commands instead of reconnecting for every line, or
+* {@code --pipeline} to also send every command without waiting for the previous response.
 */
 public final class GameClient {
 
@@ -18,6 +20,14 @@ public final class GameClient {
 
     public static void main(String[] args) throws IOException {
         String username = args[0];
+        if (args.length > 1 && args[1].equals("--session")) {
+            runSession(username);
+            return;
+        }
+        if (args.length > 1 && args[1].equals("--pipeline")) {
+            runPipelinedSession(username);
+            return;
+        }
         while (!Thread.interrupted()) handleNextCommand(username);
     }
 
@@ -30,14 +40,74 @@ public final class GameClient {
         var socketWriter = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream()))) {
             socketWriter.write(username + ": " + command + "\n");
             socketWriter.flush();
-            String incomingMessage = socketReader.readLine();
-            if (incomingMessage == null) {
-                throw new IOException("Server disconnected (end-of-stream)");
+            printResponse(socketReader);
+        }
+    }
+
+    private static void runSession(String username) throws IOException {
+        BufferedReader commandLine = new BufferedReader(new InputStreamReader(System.in));
+        try (var socket = new Socket("localhost", 8888);
+        var socketReader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+        var socketWriter = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream()))) {
+            socketWriter.write(Session.SESSION_PREFIX + username + "\n");
+            socketWriter.flush();
+            printResponse(socketReader);
+            while (!Thread.interrupted()) {
+                System.out.print(username + ":> ");
+                String command = commandLine.readLine();
+                if (command == null) {
+                    return;
+                }
+                socketWriter.write(command + "\n");
+                socketWriter.flush();
+                printResponse(socketReader);
             }
-            while (incomingMessage != null && !incomingMessage.contains("" + END_OF_TRANSMISSION + "")) {
-                System.out.println(incomingMessage);
-                incomingMessage = socketReader.readLine();
+        }
+    }
+
+    private static void runPipelinedSession(String username) throws IOException {
+        BufferedReader commandLine = new BufferedReader(new InputStreamReader(System.in));
+        try (var socket = new Socket("localhost", 8888);
+        var socketReader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+        var socketWriter = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream()))) {
+            socketWriter.write(Session.SESSION_PREFIX + username + "\n");
+            socketWriter.flush();
+            printResponse(socketReader);
+            Thread responsePrinter = new Thread(() -> printResponses(socketReader));
+            responsePrinter.start();
+            int requestId = 0;
+            String command = commandLine.readLine();
+            while (command != null) {
+                socketWriter.write("" + Session.REQUEST_ID_PREFIX + requestId++ + " " + command + "\n");
+                if (!commandLine.ready()) {
+                    socketWriter.flush();
+                }
+                command = commandLine.readLine();
             }
+            socketWriter.flush();
+            socket.shutdownOutput();
+            responsePrinter.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void printResponses(BufferedReader socketReader) {
+        try {
+            while (!Thread.interrupted()) printResponse(socketReader);
+        } catch (IOException e) {
+            System.out.println("Session closed");
+        }
+    }
+
+    private static void printResponse(BufferedReader socketReader) throws IOException {
+        String incomingMessage = socketReader.readLine();
+        if (incomingMessage == null) {
+            throw new IOException("Server disconnected (end-of-stream)");
+        }
+        while (incomingMessage != null && !incomingMessage.contains("" + END_OF_TRANSMISSION + "")) {
+            System.out.println(incomingMessage);
+            incomingMessage = socketReader.readLine();
         }
     }
 }
@@ -1,23 +1,37 @@
 package edu.uob;
 
+/**
+* A view of one handle in a {@link WorldStore}. It only holds the store and the handle; the name,
+* description and container are read from the store's columns, so every change made through any view
+* is seen by all of them. Views are made by {@link WorldStore#view(int)}, which keeps one per handle.
+*/
 public class GameEntity
 {
-    private final String name;
-    private final String description;
+    final WorldStore store;
+    final int handle;
 
-    public GameEntity(String name, String description)
+    GameEntity(WorldStore store, int handle)
     {
-        this.name = name;
-        this.description = description;
+        this.store = store;
+        this.handle = handle;
     }
 
     public String getName()
     {
-        return name;
+        return store.getName(handle);
     }
 
     public String getDescription()
     {
-        return description;
+        return store.getDescription(handle);
+    }
+
+    /**
+    * The location, storeroom or player currently holding this entity, or {@code null} for locations and
+    * entities that are nowhere.
+    */
+    public GameEntity getContainer()
+    {
+        return store.view(store.getContainer(handle));
     }
 }
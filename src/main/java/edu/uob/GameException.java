@@ -16,4 +16,18 @@ public class GameException extends Exception {
             super("Location " + location + " does not exist");
         }
     }
+
+    public static class MalformedEntitiesFileException extends GameException {
+        @Serial private static final long serialVersionUID = 1;
+        public MalformedEntitiesFileException(int line) {
+            super("Entities file is malformed at line " + line);
+        }
+    }
+
+    public static class UnmatchableActionException extends GameException {
+        @Serial private static final long serialVersionUID = 1;
+        public UnmatchableActionException(int position) {
+            super("Action " + position + " has no trigger or no subject");
+        }
+    }
 }
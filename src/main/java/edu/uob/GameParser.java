@@ -1,25 +1,42 @@
 package edu.uob;
 
 import edu.uob.ParserException.*;
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.List;
 
 
 public class GameParser {
     String player;
-    List<String> actions;
-    List<String> commands;
-    List<String> subjects;
+    Vocabulary vocabulary;
+    int[] actions;
+    int[] commands;
+    int[] subjects;
+    int actionCount;
+    int commandCount;
+    int subjectCount;
+    ParseCache cache;
     public GameParser() {
-        this.actions = new ArrayList<>();
-        this.subjects = new ArrayList<>();
-        this.commands = new ArrayList<>();
+        this.actions = new int[2];
+        this.subjects = new int[4];
+        this.commands = new int[1];
+    }
+
+    /** A parser that looks the command up in, and adds it to, a cache shared between parsers. */
+    public GameParser(ParseCache cache) {
+        this();
+        this.cache = cache;
     }
 
     public void parseCommand(Game game, String command) throws NoPlayerNameException, WrongOrderCommandException, TooManyCommandException, TooManyActionException, InvalidPlayerNameException {
+        parseCommand(game.getVocabulary(), command);
+    }
+
+    public void parseCommand(Game game, String playerName, String command) throws WrongOrderCommandException, TooManyCommandException, TooManyActionException {
+        parseCommand(game.getVocabulary(), playerName, command);
+    }
+
+    public void parseCommand(Vocabulary vocabulary, String command) throws NoPlayerNameException, WrongOrderCommandException, TooManyCommandException, TooManyActionException, InvalidPlayerNameException {
         if (!command.contains(":")) {
             throw new NoPlayerNameException();
         }
@@ -28,52 +45,168 @@ public class GameParser {
         player = commandArr[0].toLowerCase();
         String[] cmdArrNoName = Arrays.copyOfRange(commandArr, 1, commandArr.length);
         String cmdNoName = String.join(":", cmdArrNoName);
-        String remainingCmd = retrieveActionsFromCmd(game, cmdNoName).toLowerCase();
-        parseTokens(game, remainingCmd);
+        this.vocabulary = vocabulary;
+        parseText(cmdNoName.toLowerCase());
+    }
+
+    public void parseCommand(Vocabulary vocabulary, String playerName, String command) throws WrongOrderCommandException, TooManyCommandException, TooManyActionException {
+        player = playerName;
+        this.vocabulary = vocabulary;
+        parseText(command.toLowerCase());
+    }
+
+    /**
+    * Parses a {@code name: command} line straight from the remaining bytes of a network buffer. ASCII
+    * letters are lower-cased in place and words are resolved against the vocabulary where they lie, so
+    * the only String made is the player name.
+    */
+    public void parseCommand(Vocabulary vocabulary, ByteBuffer command) throws NoPlayerNameException, WrongOrderCommandException, TooManyCommandException, TooManyActionException, InvalidPlayerNameException {
+        int start = command.position();
+        int colon = indexOf(command, (byte) ':', start, command.limit());
+        if (colon < 0) {
+            throw new NoPlayerNameException();
+        }
+        AsciiText name = new AsciiText(command, start, colon - start);
+        validateName(name);
+        AsciiText.foldCase(command, start, command.limit());
+        player = name.toString();
+        this.vocabulary = vocabulary;
+        parseText(new AsciiText(command, colon + 1, command.limit() - colon - 1));
     }
 
-    private void parseTokens(Game game, String command) throws WrongOrderCommandException, TooManyCommandException, TooManyActionException {
-        for (String token : command.split("\\s+")) {
-            if (game.isCommand(token)) {
-                validateCommand();
-                commands.add(token);
-            } else if (game.isValidSubject(token)) {
-                subjects.add(token);
+    /**
+    * Same as {@link #parseCommand(Vocabulary, ByteBuffer)} for a player already bound to the connection,
+    * so the buffer holds the bare command.
+    */
+    public void parseCommand(Vocabulary vocabulary, String playerName, ByteBuffer command) throws WrongOrderCommandException, TooManyCommandException, TooManyActionException {
+        AsciiText.foldCase(command, command.position(), command.limit());
+        player = playerName;
+        this.vocabulary = vocabulary;
+        parseText(AsciiText.of(command));
+    }
+
+    private static int indexOf(ByteBuffer buffer, byte target, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (buffer.get(i) == target) {
+                return i;
             }
         }
+        return -1;
+    }
+
+    public static String normalisePlayerName(String name) throws InvalidPlayerNameException {
+        validateName(name);
+        return name.toLowerCase();
     }
 
-    private String retrieveActionsFromCmd(Game game, String command) {
-        String updatedCommand = command.toLowerCase();
-        String[] actionList = game.getActionNames();
-        for (String action : actionList) {
-            String regex = "\\b" + action + "\\b";
-            Pattern pattern = Pattern.compile(regex, Pattern.CASE_INSENSITIVE);
-            Matcher matcher = pattern.matcher(updatedCommand);
-            boolean matchFound = matcher.find();
-            if (matchFound) {
-                actions.add(action);
+    /**
+    * Finds the triggers in an already lower-cased command, then looks every whitespace separated word
+    * around them up in the vocabulary without cutting it out of the text.
+    */
+    private void parseText(CharSequence command) throws WrongOrderCommandException, TooManyCommandException, TooManyActionException {
+        if (cache == null) {
+            parseUncached(command);
+            return;
+        }
+        ParsedCommand parsed = cache.get(vocabulary, command);
+        if (parsed != null) {
+            load(parsed);
+            return;
+        }
+        parseUncached(command);
+        cache.put(command, new ParsedCommand(vocabulary, getActionIds(), getCommandIds(), getSubjectIds()));
+    }
+
+    private void load(ParsedCommand parsed) {
+        actions = parsed.getActions();
+        commands = parsed.getCommands();
+        subjects = parsed.getSubjects();
+        actionCount = actions.length;
+        commandCount = commands.length;
+        subjectCount = subjects.length;
+    }
+
+    private void parseUncached(CharSequence command) throws WrongOrderCommandException, TooManyCommandException, TooManyActionException {
+        List<TriggerMatcher.Match> matches = vocabulary.getTriggerMatcher().findTriggers(command);
+        for (TriggerMatcher.Match match : matches) {
+            int id = vocabulary.getTriggerId(match);
+            if (!contains(actions, actionCount, id)) {
+                actions = append(actions, actionCount++, id);
             }
-            updatedCommand = matcher.replaceAll("");
         }
-        return updatedCommand;
+        int start = 0;
+        for (TriggerMatcher.Match match : matches) {
+            parseTokens(command, start, match.getStart());
+            start = match.getEnd();
+        }
+        parseTokens(command, start, command.length());
     }
 
-    private void validateName(String name) throws InvalidPlayerNameException {
-        boolean isValidName = name.matches("^[a-zA-Z\\s'-]*$");
-        if (isValidName) {
+    private void parseTokens(CharSequence command, int from, int end) throws WrongOrderCommandException, TooManyCommandException, TooManyActionException {
+        int i = from;
+        while (i < end) {
+            while (i < end && isWhitespace(command.charAt(i))) {
+                i++;
+            }
+            int start = i;
+            while (i < end && !isWhitespace(command.charAt(i))) {
+                i++;
+            }
+            if (i > start) {
+                addToken(vocabulary.idOf(command, start, i));
+            }
+        }
+    }
+
+    private void addToken(int id) throws WrongOrderCommandException, TooManyCommandException, TooManyActionException {
+        if (id == Vocabulary.NOT_FOUND) {
             return;
         }
-        throw new InvalidPlayerNameException(name);
+        if (vocabulary.isCommand(id)) {
+            validateCommand();
+            commands = append(commands, commandCount++, id);
+        } else if (vocabulary.isValidSubject(id)) {
+            subjects = append(subjects, subjectCount++, id);
+        }
+    }
+
+    // Same characters as \s in a regular expression
+    static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    private static int[] append(int[] ids, int count, int id) {
+        int[] target = count < ids.length ? ids : Arrays.copyOf(ids, ids.length * 2);
+        target[count] = id;
+        return target;
+    }
+
+    private static boolean contains(int[] ids, int count, int id) {
+        for (int i = 0; i < count; i++) {
+            if (ids[i] == id) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void validateName(CharSequence name) throws InvalidPlayerNameException {
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            boolean isLetter = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+            if (!isLetter && !isWhitespace(c) && c != '\'' && c != '-') {
+                throw new InvalidPlayerNameException(name.toString());
+            }
+        }
     }
     private void validateCommand() throws WrongOrderCommandException, TooManyActionException, TooManyCommandException {
-        if (commands.size() == 1) {
+        if (commandCount == 1) {
             throw new TooManyCommandException();
         }
-        if (!actions.isEmpty()) {
+        if (actionCount > 0) {
             throw new TooManyActionException();
         }
-        if (!subjects.isEmpty()) {
+        if (subjectCount > 0) {
             throw new WrongOrderCommandException();
         }
     }
@@ -81,13 +214,35 @@ public class GameParser {
     public String getPlayerName() {
         return player;
     }
-    public List<String> getActions() {
-        return actions;
+    public Vocabulary getVocabulary() {
+        return vocabulary;
+    }
+    public int[] getActionIds() {
+        return Arrays.copyOf(actions, actionCount);
     }
-    public List<String> getSubjects() {
-        return subjects;
+    public int[] getSubjectIds() {
+        return Arrays.copyOf(subjects, subjectCount);
     }
-    public List<String> getCommands() {
-        return commands;
+    public int[] getCommandIds() {
+        return Arrays.copyOf(commands, commandCount);
+    }
+    public int getActionCount() {
+        return actionCount;
+    }
+    public int getSubjectCount() {
+        return subjectCount;
+    }
+    public int getCommandCount() {
+        return commandCount;
+    }
+    public CmdType getCommandType() {
+        return commandCount == 0 ? null : vocabulary.getCommandType(commands[0]);
+    }
+    public String[] getSubjectNames() {
+        String[] names = new String[subjectCount];
+        for (int i = 0; i < subjectCount; i++) {
+            names[i] = vocabulary.nameOf(subjects[i]);
+        }
+        return names;
     }
 }
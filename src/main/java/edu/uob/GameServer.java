@@ -3,39 +3,62 @@ package edu.uob;
 import java.io.*;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.locks.ReentrantLock;
 
-import com.alexmerz.graphviz.Parser;
-import com.alexmerz.graphviz.ParseException;
-import com.alexmerz.graphviz.objects.Graph;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.NodeList;
-import org.xml.sax.SAXException;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamException;
 
 import edu.uob.ActionException.TooManyActionsException;
 import edu.uob.ActionException.NoActionFoundException;
 import edu.uob.ParserException.*;
-import edu.uob.GameException.NoLocationFoundToAddPathException;
+import edu.uob.GameException.UnmatchableActionException;
+import edu.uob.ServerException.MailboxFullException;
 
 /** This class implements the STAG server. */
 public final class GameServer {
     Game game;
-    FileReader entityFileReader;
+    private final ReentrantLock gameLock = new ReentrantLock();
+    private final LocationLocks locationLocks = new LocationLocks(LOCK_STRIPES);
+    private final ParseCache parseCache = new ParseCache(PARSE_CACHE_SIZE);
+    private final StartupTimings startupTimings = new StartupTimings();
+    private final ReentrantLock reloadLock = new ReentrantLock();
+    private final File actionsFile;
+    private ExecutionMode executionMode = ExecutionMode.SERIAL;
+    private CommandEngine engine;
 
 
     private static final char END_OF_TRANSMISSION = 4;
+    private static final int LOCK_STRIPES = 64;
+    private static final int MAILBOX_CAPACITY = 64;
+    private static final int TICK_RATE = 20;
+    private static final int PARSE_CACHE_SIZE = 4096;
+    private static final int RELOAD_SETTLE_MILLIS = 100;
 
     public static void main(String[] args) throws IOException {
         File entitiesFile = Paths.get("config" + File.separator + "extended-entities.dot").toAbsolutePath().toFile();
         File actionsFile = Paths.get("config" + File.separator + "extended-actions.xml").toAbsolutePath().toFile();
         GameServer server = new GameServer(entitiesFile, actionsFile);
-        server.blockingListenOn(8888);
+        System.out.println("Loaded world in " + server.getStartupTimings());
+        server.watchActions();
+        ExecutionMode executionMode = args.length > 2 ? ExecutionMode.parse(args[2]) : ExecutionMode.SERIAL;
+        server.setExecutionMode(executionMode == null ? ExecutionMode.SERIAL : executionMode);
+        ServerMode mode = args.length > 0 ? ServerMode.parse(args[0]) : ServerMode.BLOCKING;
+        int ioThreads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        server.listenOn(8888, mode == null ? ServerMode.BLOCKING : mode, ioThreads);
     }
 
     /**
@@ -49,19 +72,16 @@ public final class GameServer {
     *
     */
     public GameServer(File entitiesFile, File actionsFile) {
+        this.actionsFile = actionsFile;
         try {
-            ArrayList<Graph> entities = parseEntitiesFile(entitiesFile);
-            NodeList actions = parseActionsFile(actionsFile);
+            WorldImage image = WorldLoader.load(entitiesFile, actionsFile, startupTimings);
             game = new Game();
-            game.initGame(entities, actions);
-            entityFileReader.close();
-        } catch (NoLocationFoundToAddPathException ne) {
-            System.out.println(ne.getMessage());
-        } catch (ParseException pe) {
-            System.out.println("Something went wrong while parsing");
+            game.initGame(image.getWorld(), image.getActions(), startupTimings);
+        } catch (GameException ge) {
+            System.out.println(ge.getMessage());
         } catch (FileNotFoundException fe) {
             System.out.println("Cannot find the file to parse");
-        } catch(ParserConfigurationException | SAXException pse) {
+        } catch(XMLStreamException xse) {
             System.out.println("Cannot parse the action file");
         } catch(IOException ioe) {
             System.out.println("Failed reading in action file");
@@ -70,21 +90,6 @@ public final class GameServer {
         }
     }
 
-    private NodeList parseActionsFile(File actionsFile) throws ParserConfigurationException, SAXException, IOException {
-        DocumentBuilder builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
-        Document document = builder.parse(actionsFile);
-        Element root = document.getDocumentElement();
-        return root.getChildNodes();
-    }
-
-    private ArrayList<Graph> parseEntitiesFile(File entitiesFile) throws FileNotFoundException, ParseException {
-        Parser parser = new Parser();
-        entityFileReader = new FileReader(entitiesFile);
-        parser.parse(entityFileReader);
-        Graph wholeDocument = parser.getGraphs().get(0);
-        return wholeDocument.getSubgraphs();
-    }
-
     /**
     * KEEP this signature (i.e. {@code edu.uob.GameServer.handleCommand(String)}) otherwise we won't be
     * able to mark your submission correctly.
@@ -93,27 +98,293 @@ public final class GameServer {
     */
     public String handleCommand(String command) {
         try {
-            GameParser parser = new GameParser();
+            GameParser parser = new GameParser(parseCache);
+            parser.parseCommand(game, command);
+            return execute(parser);
+        } catch (ParserException.NoPlayerNameException | WrongOrderCommandException | TooManyCommandException |
+                 TooManyActionException | InvalidPlayerNameException e) {
+            return e.getMessage();
+        } catch (Exception e) {
+            return "Something went wrong while handling this action";
+        }
+    }
+
+    /**
+    * Dispatches a command to the configured execution mode without waiting for it to run. Parsing
+    * happens on the calling thread; in {@link ExecutionMode#QUEUED} mode the command then waits in its
+    * player's mailbox, otherwise it runs before this method returns.
+    */
+    public CompletableFuture<String> dispatchCommand(String command) {
+        try {
+            GameParser parser = new GameParser(parseCache);
             parser.parseCommand(game, command);
+            return dispatch(parser);
+        } catch (ParserException.NoPlayerNameException | WrongOrderCommandException | TooManyCommandException |
+                 TooManyActionException | InvalidPlayerNameException | MailboxFullException e) {
+            return CompletableFuture.completedFuture(e.getMessage());
+        } catch (Exception e) {
+            return CompletableFuture.completedFuture("Something went wrong while handling this action");
+        }
+    }
 
-            int actionNumber = parser.getActions().size();
-            int commandNumber = parser.getCommands().size();
+    /**
+    * Same as {@link #dispatchCommand(String)} for a player whose name has already been validated by a
+    * {@link Session} when the connection was opened. The command must not carry the {@code name:} prefix.
+    */
+    public CompletableFuture<String> dispatchCommand(String playerName, String command) {
+        try {
+            GameParser parser = new GameParser(parseCache);
+            parser.parseCommand(game, playerName, command);
+            return dispatch(parser);
+        } catch (WrongOrderCommandException | TooManyCommandException | TooManyActionException |
+                 MailboxFullException e) {
+            return CompletableFuture.completedFuture(e.getMessage());
+        } catch (Exception e) {
+            return CompletableFuture.completedFuture("Something went wrong while handling this action");
+        }
+    }
+
+    /**
+    * Same as {@link #dispatchCommand(String)} for a {@code name: command} line still in a network buffer,
+    * from its position to its limit. The buffer is only read, and case-folded, before this method returns.
+    */
+    public CompletableFuture<String> dispatchCommand(ByteBuffer command) {
+        try {
+            GameParser parser = new GameParser(parseCache);
+            parser.parseCommand(game.getVocabulary(), command);
+            return dispatch(parser);
+        } catch (ParserException.NoPlayerNameException | WrongOrderCommandException | TooManyCommandException |
+                 TooManyActionException | InvalidPlayerNameException | MailboxFullException e) {
+            return CompletableFuture.completedFuture(e.getMessage());
+        } catch (Exception e) {
+            return CompletableFuture.completedFuture("Something went wrong while handling this action");
+        }
+    }
+
+    /** Same as {@link #dispatchCommand(String, String)} for a bare command still in a network buffer. */
+    public CompletableFuture<String> dispatchCommand(String playerName, ByteBuffer command) {
+        try {
+            GameParser parser = new GameParser(parseCache);
+            parser.parseCommand(game.getVocabulary(), playerName, command);
+            return dispatch(parser);
+        } catch (WrongOrderCommandException | TooManyCommandException | TooManyActionException |
+                 MailboxFullException e) {
+            return CompletableFuture.completedFuture(e.getMessage());
+        } catch (Exception e) {
+            return CompletableFuture.completedFuture("Something went wrong while handling this action");
+        }
+    }
+
+    private CompletableFuture<String> dispatch(GameParser parser) throws MailboxFullException {
+        if (engine == null) {
+            return CompletableFuture.completedFuture(execute(parser));
+        }
+        return engine.submit(parser.getPlayerName(), () -> execute(parser));
+    }
+
+    /**
+    * Chooses how concurrent commands are isolated from each other: {@link ExecutionMode#SERIAL} runs one
+    * command at a time, {@link ExecutionMode#STRIPED} only locks the player and the locations the command
+    * touches, so players in different rooms run in parallel, {@link ExecutionMode#QUEUED} additionally
+    * runs dispatched commands on a worker pool through per-player mailboxes and {@link ExecutionMode#STAGED}
+    * parses on the dispatching threads but executes everything on a single game thread.
+    * {@link ExecutionMode#TICK} buffers dispatched commands and runs them in batches, {@code TICK_RATE}
+    * times per second.
+    */
+    public void setExecutionMode(ExecutionMode executionMode) {
+        if (engine != null) {
+            engine.shutdown();
+        }
+        engine = switch (executionMode) {
+            case QUEUED -> new PlayerScheduler(Executors.newFixedThreadPool(
+                    Runtime.getRuntime().availableProcessors(), GameServer::newWorkerThread), MAILBOX_CAPACITY);
+            case STAGED -> new StagedEngine();
+            case TICK -> new TickEngine(gameLock, TICK_RATE);
+            default -> null;
+        };
+        this.executionMode = executionMode;
+    }
+
+    /** Hit, miss and eviction counters of the cache of parsed commands shared by every connection. */
+    public ParseCache getParseCache() {
+        return parseCache;
+    }
+
+    /**
+    * Reads the actions file again and swaps the new actions in, keeping the world and every player as they
+    * are. The new set is built and checked against the loaded entities while commands carry on; handling
+    * only pauses for the swap itself. A file that fails to parse or has an action no command could match
+    * leaves the current actions in place. Entities the game does not have are reported but, as at startup,
+    * only make the actions naming them unusable.
+    *
+    * @return A one-line report of what happened.
+    */
+    public String reloadActions() {
+        reloadLock.lock();
+        try {
+            long start = System.nanoTime();
+            ActionSet reloaded = ActionSet.build(game, ActionsLoader.load(actionsFile), new StartupTimings());
+            int unmatchable = reloaded.findUnmatchableAction();
+            if (unmatchable != 0) {
+                throw new UnmatchableActionException(unmatchable);
+            }
+            game.replaceActions(reloaded);
+            parseCache.invalidate();
+            Set<String> unknown = reloaded.getUnknownItems();
+            return "Reloaded " + reloaded.size() + " actions in " + (System.nanoTime() - start) / 1_000_000 + "ms"
+                    + (unknown.isEmpty() ? "" : ", not in the game: " + String.join(", ", unknown));
+        } catch (GameException ge) {
+            return "Reload rejected: " + ge.getMessage();
+        } catch (XMLStreamException | IOException e) {
+            return "Reload failed: cannot parse the action file";
+        } finally {
+            reloadLock.unlock();
+        }
+    }
+
+    /**
+    * Reloads the actions whenever the actions file changes, from a daemon thread watching its directory.
+    * Editors often write a file in several steps, so changes are left to settle briefly before reloading.
+    */
+    public void watchActions() throws IOException {
+        Path file = actionsFile.getAbsoluteFile().toPath();
+        WatchService watcher = file.getFileSystem().newWatchService();
+        file.getParent().register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        Thread thread = new Thread(() -> watchActions(watcher, file.getFileName()), "stag-actions-watch");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void watchActions(WatchService watcher, Path fileName) {
+        try (watcher) {
+            while (!Thread.interrupted()) {
+                WatchKey key = watcher.take();
+                boolean isChanged = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    isChanged |= fileName.equals(event.context());
+                }
+                key.reset();
+                if (!isChanged) {
+                    continue;
+                }
+                Thread.sleep(RELOAD_SETTLE_MILLIS);
+                for (WatchKey settled = watcher.poll(); settled != null; settled = watcher.poll()) {
+                    settled.pollEvents();
+                    settled.reset();
+                }
+                System.out.println(reloadActions());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            System.out.println("Stopped watching the actions file");
+        }
+    }
+
+    /** How long each phase of loading this server's world took. */
+    public StartupTimings getStartupTimings() {
+        return startupTimings;
+    }
+
+    /** Batch size and tick duration counters, or {@code null} unless running in {@link ExecutionMode#TICK}. */
+    public TickMetrics getTickMetrics() {
+        if (engine instanceof TickEngine tickEngine) {
+            return tickEngine.getMetrics();
+        }
+        return null;
+    }
+
+    private static Thread newWorkerThread(Runnable task) {
+        Thread thread = new Thread(task, "stag-worker");
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    private String execute(GameParser parser) {
+        if (executionMode == ExecutionMode.STRIPED || executionMode == ExecutionMode.QUEUED) {
+            return executeStriped(parser);
+        }
+        gameLock.lock();
+        try {
+            return executeParsed(parser);
+        } finally {
+            gameLock.unlock();
+        }
+    }
+
+    private String executeStriped(GameParser parser) {
+        PlayerEntity player = game.matchPlayerByName(parser.getPlayerName());
+        ReentrantLock playerLock = player.getCommandLock();
+        playerLock.lock();
+        try {
+            int[] stripes = locationLocks.acquire(findTouchedLocations(parser, player));
+            try {
+                if (!isLocalAction(parser, player)) {
+                    locationLocks.release(stripes);
+                    stripes = locationLocks.acquireAll();
+                }
+                return executeParsed(parser);
+            } finally {
+                locationLocks.release(stripes);
+            }
+        } finally {
+            playerLock.unlock();
+        }
+    }
+
+    private List<LocationEntity> findTouchedLocations(GameParser parser, PlayerEntity player) {
+        List<LocationEntity> touched = new ArrayList<>();
+        touched.add(player.getCurrentLocation());
+        if (parser.getCommandCount() > 0) {
+            boolean isGoTo = parser.getCommandType() == CmdType.GOTO;
+            if (isGoTo && parser.getSubjectCount() == 1) {
+                touched.add(game.getLocationByName(parser.getSubjectNames()[0]));
+            }
+            return touched;
+        }
+        GameAction action = findAction(parser);
+        if (action != null && action.hasSideEffects()) {
+            touched.add(game.getStoreroom());
+        }
+        return touched;
+    }
+
+    private boolean isLocalAction(GameParser parser, PlayerEntity player) {
+        if (parser.getCommandCount() > 0) {
+            return true;
+        }
+        GameAction action = findAction(parser);
+        return action == null || action.isLocal(game, player);
+    }
+
+    private GameAction findAction(GameParser parser) {
+        if (parser.getActionCount() == 0) {
+            return null;
+        }
+        try {
+            return game.matchAction(parser.getVocabulary(), parser.getActionIds(), parser.getSubjectIds());
+        } catch (TooManyActionsException | NoActionFoundException e) {
+            return null;
+        }
+    }
+
+    private String executeParsed(GameParser parser) {
+        try {
+            int actionNumber = parser.getActionCount();
+            int commandNumber = parser.getCommandCount();
             if (actionNumber == 0 && commandNumber == 0) {
                 throw new NoActionFoundException();
             }
-            String[] subjects = parser.getSubjects().toArray(new String[0]);
+            String[] subjects = parser.getSubjectNames();
             PlayerEntity player = game.matchPlayerByName(parser.getPlayerName());
             if (commandNumber > 0) {
-                Command cmd = game.getCommandByName(parser.getCommands().get(0));
+                Command cmd = game.getCommand(parser.getCommandType());
                 return cmd.execute(player, subjects);
             } else  {
-                GameAction action = game.matchAction(parser.getActions(), parser.getSubjects());
+                GameAction action = game.matchAction(parser.getVocabulary(), parser.getActionIds(), parser.getSubjectIds());
                 return action.execute(game, player);
             }
-        } catch (ParserException.NoPlayerNameException | TooManyActionsException |
-                 NoActionFoundException | CmdException | WrongOrderCommandException |
-                 TooManyCommandException |
-                 TooManyActionException | InvalidPlayerNameException e) {
+        } catch (TooManyActionsException | NoActionFoundException | CmdException e) {
             return e.getMessage();
         } catch (Exception e) {
             return "Something went wrong while handling this action";
@@ -122,6 +393,24 @@ public final class GameServer {
 
     //  === Methods below are there to facilitate server related operations. ===
 
+    /**
+    * Starts listening with the given server mode. {@link ServerMode#SELECTOR} serves all connections
+    * from {@code ioThreads} selector loops, {@link ServerMode#VIRTUAL} runs every connection on its own
+    * virtual thread and {@link ServerMode#BLOCKING} handles one connection at a time.
+    *
+    * @param portNumber The port to listen on.
+    * @param mode The connection handling strategy.
+    * @param ioThreads Number of I/O threads used by the selector mode.
+    * @throws IOException If any IO related operation fails.
+    */
+    public void listenOn(int portNumber, ServerMode mode, int ioThreads) throws IOException {
+        switch (mode) {
+            case SELECTOR -> new SelectorServer(this, ioThreads).listenOn(portNumber);
+            case VIRTUAL -> virtualThreadListenOn(portNumber);
+            default -> blockingListenOn(portNumber);
+        }
+    }
+
     /**
     * Starts a *blocking* socket server listening for new connections. This method blocks until the
     * current thread is interrupted.
@@ -137,7 +426,7 @@ public final class GameServer {
             System.out.println("Server listening on port " + portNumber);
             while (!Thread.interrupted()) {
                 try {
-                    blockingHandleConnection(s);
+                    blockingHandleConnection(s.accept());
                 } catch (IOException e) {
                     System.out.println("Connection closed");
                 }
@@ -146,27 +435,127 @@ public final class GameServer {
     }
 
     /**
-    * Handles an incoming connection from the socket server.
+    * Starts a socket server that hands every accepted connection to a new virtual thread, so the
+    * blocking read/handle/write logic of {@link #blockingHandleConnection(Socket)} can serve many
+    * players at once on a handful of carrier threads. This method blocks until the current thread is
+    * interrupted.
+    *
+    * @param portNumber The port to listen on.
+    * @throws IOException If any IO related operation fails.
+    */
+    public void virtualThreadListenOn(int portNumber) throws IOException {
+        try (ServerSocket s = new ServerSocket(portNumber)) {
+            System.out.println("Server listening on port " + portNumber);
+            Thread.Builder builder = Thread.ofVirtual().name("stag-connection-", 0);
+            while (!Thread.interrupted()) {
+                Socket socket = s.accept();
+                builder.start(() -> {
+                    try {
+                        blockingHandleConnection(socket);
+                    } catch (IOException e) {
+                        System.out.println("Connection closed");
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+    * Dispatches one frame of the multiplexed gateway protocol. The response frame carries the same
+    * request ID and player, so frames of different players may complete in any order.
+    */
+    CompletableFuture<GatewayFrame> dispatchFrame(GatewayFrame request) {
+        return dispatchCommand(request.getPlayerName() + ":" + request.getPayload())
+                .thenApply(result -> new GatewayFrame(request.getRequestId(), request.getPlayerName(), result));
+    }
+
+    /**
+    * Handles an incoming connection from the socket server. A plain connection carries a single
+    * command; a connection opened with a {@link Session} handshake keeps answering commands until the
+    * client hangs up, and one opened with the {@link GatewayFrame#HANDSHAKE} switches to binary frames
+    * carrying commands for many players.
     *
     * <p>This method isn't used for marking. You shouldn't have to modify this method, but you can if
     * * you want to.
     *
-    * @param serverSocket The client socket to read/write from.
+    * @param socket The client socket to read/write from.
     * @throws IOException If any IO related operation fails.
     */
-    private void blockingHandleConnection(ServerSocket serverSocket) throws IOException {
-        try (Socket s = serverSocket.accept();
-        BufferedReader reader = new BufferedReader(new InputStreamReader(s.getInputStream()));
-        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(s.getOutputStream()))) {
+    private void blockingHandleConnection(Socket socket) throws IOException {
+        try (socket;
+        BufferedInputStream input = new BufferedInputStream(socket.getInputStream());
+        BufferedOutputStream output = new BufferedOutputStream(socket.getOutputStream())) {
             System.out.println("Connection established");
-            String incomingCommand = reader.readLine();
-            if(incomingCommand != null) {
+            String incomingCommand = readFirstLine(input);
+            if (GatewayFrame.HANDSHAKE.equals(incomingCommand)) {
+                blockingHandleGateway(new DataInputStream(input), new DataOutputStream(output));
+                return;
+            }
+            BufferedReader reader = new BufferedReader(new InputStreamReader(input));
+            BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(output));
+            Session session = new Session(this);
+            while (incomingCommand != null) {
                 System.out.println("Received message from " + incomingCommand);
-                String result = handleCommand(incomingCommand);
+                String result = session.handleLine(incomingCommand).join();
                 writer.write(result);
                 writer.write("\n" + END_OF_TRANSMISSION + "\n");
-                writer.flush();
+                if (!session.isPersistent()) {
+                    writer.flush();
+                    return;
+                }
+                // Pipelined commands are already waiting, so answer them all before flushing
+                if (!reader.ready()) {
+                    writer.flush();
+                }
+                incomingCommand = reader.readLine();
             }
         }
     }
+
+    private void blockingHandleGateway(DataInputStream input, DataOutputStream output) throws IOException {
+        // Responses are written as they complete, the phaser lets the connection wait for the last ones
+        Phaser inFlight = new Phaser(1);
+        GatewayFrame request = GatewayFrame.read(input);
+        while (request != null) {
+            inFlight.register();
+            dispatchFrame(request).whenComplete((response, error) -> {
+                writeFrame(output, response);
+                inFlight.arriveAndDeregister();
+            });
+            request = GatewayFrame.read(input);
+        }
+        inFlight.arriveAndAwaitAdvance();
+    }
+
+    private static void writeFrame(DataOutputStream output, GatewayFrame response) {
+        if (response == null) {
+            return;
+        }
+        synchronized (output) {
+            try {
+                response.write(output);
+                output.flush();
+            } catch (IOException e) {
+                System.out.println("Connection closed");
+            }
+        }
+    }
+
+    /**
+    * Reads the first line straight from the byte stream, so that whatever follows it can still be read
+    * either as text or as gateway frames.
+    */
+    private static String readFirstLine(InputStream input) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int next = input.read();
+        if (next < 0) {
+            return null;
+        }
+        while (next >= 0 && next != '\n') {
+            line.write(next);
+            next = input.read();
+        }
+        String text = line.toString(StandardCharsets.UTF_8);
+        return text.endsWith("\r") ? text.substring(0, text.length() - 1) : text;
+    }
 }
@@ -0,0 +1,125 @@
+package edu.uob;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+* One frame of the multiplexed gateway protocol, used after a connection opens with
+* {@link #HANDSHAKE}. Requests and responses share the same layout so a gateway can route each
+* response back to its player:
+*
+* <pre>
+* int   length of everything below
+* int   request ID
+* short length of the player name
+* byte[] player name (UTF-8)
+* byte[] payload (UTF-8), the command or its response
+* </pre>
+*/
+public final class GatewayFrame {
+    public static final String HANDSHAKE = "#gateway";
+    public static final int MAX_FRAME_LENGTH = 32 * 1024;
+    private static final int HEADER_LENGTH = Integer.BYTES + Short.BYTES;
+
+    private final int requestId;
+    private final String playerName;
+    private final String payload;
+
+    public GatewayFrame(int requestId, String playerName, String payload) {
+        this.requestId = requestId;
+        this.playerName = playerName;
+        this.payload = payload;
+    }
+
+    /**
+    * Reads the next frame from a blocking stream.
+    *
+    * @return The frame, or {@code null} if the stream ended cleanly between two frames.
+    * @throws IOException If the stream ends mid-frame or the frame is malformed.
+    */
+    public static GatewayFrame read(DataInputStream input) throws IOException {
+        int length;
+        try {
+            length = input.readInt();
+        } catch (EOFException e) {
+            return null;
+        }
+        checkLength(length);
+        byte[] body = new byte[length];
+        input.readFully(body);
+        return decodeBody(ByteBuffer.wrap(body), length);
+    }
+
+    /**
+    * Decodes the next frame from a buffer in read mode, consuming it.
+    *
+    * @return The frame, or {@code null} if the buffer does not hold a complete frame yet, in which case
+    * the buffer position is left untouched.
+    * @throws IOException If the frame is malformed.
+    */
+    public static GatewayFrame decode(ByteBuffer buffer) throws IOException {
+        if (buffer.remaining() < Integer.BYTES) {
+            return null;
+        }
+        int length = buffer.getInt(buffer.position());
+        checkLength(length);
+        if (buffer.remaining() < Integer.BYTES + length) {
+            return null;
+        }
+        buffer.position(buffer.position() + Integer.BYTES);
+        return decodeBody(buffer, length);
+    }
+
+    public void write(DataOutputStream output) throws IOException {
+        output.write(encode().array());
+    }
+
+    public ByteBuffer encode() {
+        byte[] name = playerName.getBytes(StandardCharsets.UTF_8);
+        byte[] body = payload.getBytes(StandardCharsets.UTF_8);
+        int length = HEADER_LENGTH + name.length + body.length;
+        ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES + length);
+        buffer.putInt(length).putInt(requestId).putShort((short) name.length).put(name).put(body);
+        return buffer.flip();
+    }
+
+    private static GatewayFrame decodeBody(ByteBuffer buffer, int length) throws IOException {
+        int end = buffer.position() + length;
+        int requestId = buffer.getInt();
+        int nameLength = buffer.getShort() & 0xFFFF;
+        if (HEADER_LENGTH + nameLength > length) {
+            throw new IOException("Malformed gateway frame");
+        }
+        String playerName = decodeString(buffer, nameLength);
+        String payload = decodeString(buffer, end - buffer.position());
+        return new GatewayFrame(requestId, playerName, payload);
+    }
+
+    private static String decodeString(ByteBuffer buffer, int length) {
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void checkLength(int length) throws IOException {
+        if (length < HEADER_LENGTH || length > MAX_FRAME_LENGTH) {
+            throw new IOException("Invalid gateway frame length " + length);
+        }
+    }
+
+    public int getRequestId() {
+        return requestId;
+    }
+
+    public String getPlayerName() {
+        return playerName;
+    }
+
+    public String getPayload() {
+        return payload;
+    }
+}
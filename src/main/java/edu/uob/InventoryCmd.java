@@ -1,5 +1,7 @@
 package edu.uob;
 
+import java.util.StringJoiner;
+
 import edu.uob.CmdException.ExtraneousEntitiesException;
 
 public class InventoryCmd extends Command {
@@ -9,8 +11,11 @@ public class InventoryCmd extends Command {
     @Override
     public String execute(PlayerEntity player, String... args) throws ExtraneousEntitiesException {
         validateEntities(args);
-        String[] artefacts = player.getInventoryNames();
-        return String.join( "\n", artefacts);
+        StringJoiner artefacts = new StringJoiner("\n");
+        for (ArtefactEntity artefact : player.getInventories()) {
+            artefacts.add(artefact.getName());
+        }
+        return artefacts.toString();
     }
     @Override
     public void validateEntities(String... args) throws ExtraneousEntitiesException {
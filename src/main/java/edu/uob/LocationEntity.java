@@ -1,58 +1,68 @@
 package edu.uob;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
+/**
+* A location and everything in it, as a view of a location handle. Its contents are the handle's
+* contents list in the {@link WorldStore}, so they keep arrival order for {@link LookCmd}, and an entity
+* is found by name through the store's name index in constant time however crowded the room is. Players
+* are kept apart from the other characters in a {@link PlayerPresence}, since their names are chosen freely
+* and may clash with an entity's.
+*/
 public class LocationEntity extends GameEntity {
-    private final List<LocationEntity> paths;
-    private final List<CharacterEntity> characters;
-    private final List<ArtefactEntity> artefacts;
-    private final List<FurnitureEntity> furnitures;
+    private final PlayerPresence players;
 
-    public LocationEntity(String name, String description) {
-        super(name, description);
-        this.paths = new ArrayList<>();
-        this.characters = new ArrayList<>();
-        this.artefacts = new ArrayList<>();
-        this.furnitures = new ArrayList<>();
+    LocationEntity(WorldStore store, int handle) {
+        super(store, handle);
+        this.players = new PlayerPresence();
+    }
+
+    private static String key(String name) {
+        return name.toLowerCase();
     }
 
     public void addFurniture(FurnitureEntity furniture) {
-        furnitures.add(furniture);
+        store.move(furniture.handle, handle);
     }
     public void addCharacter(CharacterEntity character) {
-        characters.add(character);
+        if (character instanceof PlayerEntity player) {
+            players.join(player);
+        }
+        store.move(character.handle, handle);
     }
     public void removeCharacter(CharacterEntity character) {
-        characters.remove(character);
+        boolean isRemoved = character instanceof PlayerEntity
+                ? players.leave((PlayerEntity) character)
+                : store.getContainer(character.handle) == handle;
+        if (isRemoved) {
+            store.move(character.handle, WorldStore.NONE);
+        }
     }
     public void addPath(LocationEntity path) {
-        paths.add(path);
+        store.addPath(handle, path.handle);
     }
 
-    private GameEntity removeItemFromTargetListByName(List<? extends GameEntity> targetList, String name) {
-        for (GameEntity entity : targetList) {
-            if (entity.getName().equalsIgnoreCase(name)) {
-                targetList.remove(entity);
-                return entity;
-            }
+    private GameEntity removeByName(String name, EntityType kind) {
+        int entity = store.find(handle, key(name), kind);
+        if (entity == WorldStore.NONE) {
+            return null;
         }
-        return null;
+        store.move(entity, WorldStore.NONE);
+        return store.view(entity);
     }
 
     public LocationEntity getPathByName(String name) {
-        for (LocationEntity path : paths) {
-            if (path.getName().equalsIgnoreCase(name)) {
-                return path;
-            }
-        }
-        return null;
+        return (LocationEntity) store.view(store.findPath(handle, key(name)));
     }
     public void addArtefact(ArtefactEntity artefact) {
-        artefacts.add(artefact);
+        store.move(artefact.handle, handle);
     }
-    public void addArtefacts(List<ArtefactEntity> artefact) {
-        artefacts.addAll(artefact);
+    public void addArtefacts(Collection<ArtefactEntity> artefact) {
+        for (ArtefactEntity item : artefact) {
+            addArtefact(item);
+        }
     }
     public void addEntity(GameEntity entity) {
         if (entity instanceof LocationEntity) {
@@ -66,78 +76,67 @@ public class LocationEntity extends GameEntity {
         }
     }
     public GameEntity removeEntityByName(String name) {
-        boolean isInPath = hasItemInTargetListByName(paths, name);
-        if (isInPath) {
-            removeItemFromTargetListByName(paths, name);
+        int path = store.findPath(handle, key(name));
+        if (path != WorldStore.NONE) {
+            store.removePath(handle, path);
             return null;
         }
-        boolean isInCharacters = hasItemInTargetListByName(characters, name);
-        if (isInCharacters) {
-           return removeItemFromTargetListByName(characters, name);
-        }
-        boolean isInArtefacts = hasItemInTargetListByName(artefacts, name);
-        if (isInArtefacts) {
-            return removeItemFromTargetListByName(artefacts, name);
-        }
-        boolean isInFurnitures = hasItemInTargetListByName(furnitures, name);
-        if (isInFurnitures) {
-            return removeItemFromTargetListByName(furnitures, name);
+        for (EntityType kind : new EntityType[] {EntityType.CHARACTER, EntityType.ARTEFACT, EntityType.FURNITURE}) {
+            GameEntity entity = removeByName(name, kind);
+            if (entity != null) {
+                return entity;
+            }
         }
         return null;
     }
 
     public boolean isItemHereByName(String name) {
-        boolean isCurrentLocation = name.equalsIgnoreCase(this.getName());
-        boolean isInPath = hasItemInTargetListByName(paths, name);
-        boolean isInCharacters = hasItemInTargetListByName(characters, name);
-        boolean isInArtefacts = hasItemInTargetListByName(artefacts, name);
-        boolean isInFurnitures = hasItemInTargetListByName(furnitures, name);
-        return isInPath || isInCharacters || isInArtefacts || isInFurnitures || isCurrentLocation;
-    }
-    public boolean hasItemInTargetListByName(List<? extends GameEntity> targetList, String itemName) {
-        for (GameEntity entity : targetList) {
-            if (entity.getName().equalsIgnoreCase(itemName)) {
-                return true;
-            }
-        }
-        return false;
+        String key = key(name);
+        return key.equals(key(this.getName())) || store.findPath(handle, key) != WorldStore.NONE
+                || store.find(handle, key, null) != WorldStore.NONE;
     }
     public boolean hasArtefactByName(String name) {
-        return hasItemInTargetListByName(artefacts, name);
+        return store.find(handle, key(name), EntityType.ARTEFACT) != WorldStore.NONE;
     }
     public boolean hasFurnitureByName(String name) {
-        return hasItemInTargetListByName(furnitures, name);
+        return store.find(handle, key(name), EntityType.FURNITURE) != WorldStore.NONE;
     }
     public boolean hasCharacterByName(String name) {
-        return hasItemInTargetListByName(characters, name);
+        return store.find(handle, key(name), EntityType.CHARACTER) != WorldStore.NONE;
     }
     public ArtefactEntity getArtefactByName(String name) {
-        for (ArtefactEntity artefact : artefacts) {
-            if (artefact.getName().equalsIgnoreCase(name)) {
-                this.artefacts.remove(artefact);
-                return artefact;
-            }
-        }
-        return null;
+        return (ArtefactEntity) removeByName(name, EntityType.ARTEFACT);
     }
 
-    public List<CharacterEntity> getOtherPlayers(PlayerEntity excludePlayer) {
-        List<CharacterEntity> otherPlayers = new ArrayList<>();
-        for (CharacterEntity character : characters) {
-            if (character.equals(excludePlayer)) {
-                continue;
-            }
-            otherPlayers.add(character);
-        }
-        return otherPlayers;
+    /** The characters placed here by the game, not counting players. */
+    public Collection<CharacterEntity> getCharacters() {
+        return contentsOf(EntityType.CHARACTER, CharacterEntity.class);
+    }
+    public PlayerPresence getPlayers() {
+        return players;
     }
-    public List<ArtefactEntity> getArtefacts() {
-        return artefacts;
+    public Collection<ArtefactEntity> getArtefacts() {
+        return contentsOf(EntityType.ARTEFACT, ArtefactEntity.class);
     }
-    public List<FurnitureEntity> getFurnitures() {
-        return furnitures;
+    public Collection<FurnitureEntity> getFurnitures() {
+        return contentsOf(EntityType.FURNITURE, FurnitureEntity.class);
     }
-    public List<LocationEntity> getPaths() {
+    public Collection<LocationEntity> getPaths() {
+        List<LocationEntity> paths = new ArrayList<>();
+        for (int path : store.getPaths(handle)) {
+            paths.add((LocationEntity) store.view(path));
+        }
         return paths;
     }
+
+    /** The contents of one kind, in the order they arrived. */
+    private <T extends GameEntity> List<T> contentsOf(EntityType kind, Class<T> type) {
+        List<T> contents = new ArrayList<>();
+        for (int entity : store.getContents(handle)) {
+            if (store.getKind(entity) == kind) {
+                contents.add(type.cast(store.view(entity)));
+            }
+        }
+        return contents;
+    }
 }
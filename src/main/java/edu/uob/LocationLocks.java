@@ -0,0 +1,60 @@
+package edu.uob;
+
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+* Striped locks guarding the contents of locations (including the storeroom).
+*
+* <p>Every location maps onto one stripe by name. Stripes are always taken in ascending index order,
+* so two commands locking overlapping sets of locations can never deadlock; callers that also lock a
+* player must take the player lock first.
+*/
+public final class LocationLocks {
+    private final ReentrantLock[] stripes;
+
+    public LocationLocks(int stripeCount) {
+        this.stripes = new ReentrantLock[Math.max(1, stripeCount)];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+    * Locks the stripes of the given locations, ignoring {@code null} entries.
+    *
+    * @return The locked stripe indexes, to be handed back to {@link #release(int[])}.
+    */
+    public int[] acquire(List<LocationEntity> locations) {
+        int[] indexes = locations.stream()
+                .filter(location -> location != null)
+                .mapToInt(this::stripeOf)
+                .sorted()
+                .distinct()
+                .toArray();
+        for (int index : indexes) {
+            stripes[index].lock();
+        }
+        return indexes;
+    }
+
+    /** Locks every stripe, for commands that may reach into any location. */
+    public int[] acquireAll() {
+        int[] indexes = new int[stripes.length];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i].lock();
+            indexes[i] = i;
+        }
+        return indexes;
+    }
+
+    public void release(int[] indexes) {
+        for (int i = indexes.length - 1; i >= 0; i--) {
+            stripes[indexes[i]].unlock();
+        }
+    }
+
+    private int stripeOf(LocationEntity location) {
+        return Math.floorMod(location.getName().hashCode(), stripes.length);
+    }
+}
@@ -1,10 +1,14 @@
 package edu.uob;
 
 import java.util.ArrayList;
+import java.util.List;
 
 import edu.uob.CmdException.ExtraneousEntitiesException;
 
 public class LookCmd extends Command {
+    /** Crowded rooms only list this many other players, followed by a count of the rest. */
+    public static final int MAX_LISTED_PLAYERS = 20;
+
     public LookCmd() {
         super("look");
     }
@@ -28,12 +32,20 @@ public class LookCmd extends Command {
                 .append("You can now see: \n");
 
         ArrayList<GameEntity> entities = new ArrayList<>();
-        entities.addAll(location.getOtherPlayers(player));
+        entities.addAll(location.getCharacters());
+        List<PlayerEntity> players = location.getPlayers().list(player, MAX_LISTED_PLAYERS);
+        entities.addAll(players);
+        int listedPlayers = players.size();
         entities.addAll(location.getArtefacts());
         entities.addAll(location.getFurnitures());
         for (GameEntity entity : entities) {
             result.append(entity.getDescription()).append("\n");
         }
+        int otherPlayers = location.getPlayers().count() - (location.getPlayers().contains(player) ? 1 : 0);
+        if (otherPlayers > listedPlayers) {
+            result.append("(").append(listedPlayers).append(" of ").append(otherPlayers)
+                    .append(" other players here shown)\n");
+        }
         result.append("You can access from here:  \n");
         for (LocationEntity path : location.getPaths()) {
             result.append(path.getName()).append("\n");
@@ -0,0 +1,267 @@
+package edu.uob;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+* Bounded LRU cache of parsed command shapes, keyed by the lower-cased, trimmed command text without the
+* player name. Most traffic is the same handful of commands, so the trigger scan and token lookups run once
+* per distinct command instead of once per request.
+*
+* <p>The cache is split into independently locked segments so parsing threads rarely contend. Every
+* entry remembers the {@link Vocabulary} it was parsed against and only counts as a hit for that same
+* vocabulary, so a new action set never sees a stale shape even before {@link #invalidate()} runs.
+*/
+public final class ParseCache {
+    private static final int SEGMENTS = 16;
+
+    private final Segment[] segments;
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final LongAdder evictions;
+
+    public ParseCache(int capacity) {
+        this.hits = new LongAdder();
+        this.misses = new LongAdder();
+        this.evictions = new LongAdder();
+        this.segments = new Segment[SEGMENTS];
+        int segmentCapacity = Math.max(1, capacity / SEGMENTS);
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new Segment(segmentCapacity);
+        }
+    }
+
+    /**
+    * One independently locked part of the cache: a fixed-size chained hash table whose entries are also
+    * threaded on a least-recently-used list. Lookups compare the command text in place, so a hit never
+    * copies it into a String.
+    */
+    private static final class Segment {
+        private final int capacity;
+        private final Entry[] table;
+        private final Entry eldest;
+        private int size;
+
+        Segment(int capacity) {
+            this.capacity = capacity;
+            this.table = new Entry[Integer.highestOneBit(Math.max(1, capacity * 4 / 3)) * 2];
+            this.eldest = new Entry(null, 0, null);
+            eldest.before = eldest;
+            eldest.after = eldest;
+        }
+
+        ParsedCommand get(CharSequence command, int start, int end, int hash) {
+            for (Entry entry = table[hash & (table.length - 1)]; entry != null; entry = entry.next) {
+                if (entry.hash == hash && entry.matches(command, start, end)) {
+                    unlink(entry);
+                    linkNewest(entry);
+                    return entry.value;
+                }
+            }
+            return null;
+        }
+
+        /** @return Whether the eldest entry had to be evicted to make room. */
+        boolean put(String key, int hash, ParsedCommand value) {
+            int bucket = hash & (table.length - 1);
+            for (Entry entry = table[bucket]; entry != null; entry = entry.next) {
+                if (entry.hash == hash && entry.key.equals(key)) {
+                    entry.value = value;
+                    unlink(entry);
+                    linkNewest(entry);
+                    return false;
+                }
+            }
+            Entry entry = new Entry(key, hash, value);
+            entry.next = table[bucket];
+            table[bucket] = entry;
+            linkNewest(entry);
+            if (++size <= capacity) {
+                return false;
+            }
+            remove(eldest.after);
+            return true;
+        }
+
+        private void remove(Entry removed) {
+            int bucket = removed.hash & (table.length - 1);
+            if (table[bucket] == removed) {
+                table[bucket] = removed.next;
+            } else {
+                Entry entry = table[bucket];
+                while (entry.next != removed) {
+                    entry = entry.next;
+                }
+                entry.next = removed.next;
+            }
+            unlink(removed);
+            size--;
+        }
+
+        private void linkNewest(Entry entry) {
+            entry.before = eldest.before;
+            entry.after = eldest;
+            eldest.before.after = entry;
+            eldest.before = entry;
+        }
+
+        private static void unlink(Entry entry) {
+            entry.before.after = entry.after;
+            entry.after.before = entry.before;
+        }
+
+        void clear() {
+            Arrays.fill(table, null);
+            eldest.before = eldest;
+            eldest.after = eldest;
+            size = 0;
+        }
+
+        int size() {
+            return size;
+        }
+    }
+
+    private static final class Entry {
+        private final String key;
+        private final int hash;
+        private ParsedCommand value;
+        private Entry next;
+        private Entry before;
+        private Entry after;
+
+        Entry(String key, int hash, ParsedCommand value) {
+            this.key = key;
+            this.hash = hash;
+            this.value = value;
+        }
+
+        boolean matches(CharSequence command, int start, int end) {
+            if (key.length() != end - start) {
+                return false;
+            }
+            for (int i = 0; i < key.length(); i++) {
+                if (key.charAt(i) != command.charAt(start + i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /** Start of the command once surrounding whitespace, which never changes how it parses, is trimmed. */
+    private static int trimmedStart(CharSequence command) {
+        int start = 0;
+        while (start < command.length() && GameParser.isWhitespace(command.charAt(start))) {
+            start++;
+        }
+        return start;
+    }
+
+    private static int trimmedEnd(CharSequence command, int start) {
+        int end = command.length();
+        while (end > start && GameParser.isWhitespace(command.charAt(end - 1))) {
+            end--;
+        }
+        return end;
+    }
+
+    /**
+    * {@link String#hashCode()} of the trimmed text, computed without copying it, with its high half folded
+    * into the low half so short commands still spread over a segment's buckets.
+    */
+    private static int hash(CharSequence command, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + command.charAt(i);
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    ParsedCommand get(Vocabulary vocabulary, CharSequence command) {
+        int start = trimmedStart(command);
+        int end = trimmedEnd(command, start);
+        int hash = hash(command, start, end);
+        Segment segment = segmentFor(hash);
+        ParsedCommand parsed;
+        synchronized (segment) {
+            parsed = segment.get(command, start, end, hash);
+        }
+        if (parsed == null || parsed.getVocabulary() != vocabulary) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return parsed;
+    }
+
+    /** Adds a command after a miss; only here is the trimmed text copied into a String key. */
+    void put(CharSequence command, ParsedCommand parsed) {
+        int start = trimmedStart(command);
+        int end = trimmedEnd(command, start);
+        int hash = hash(command, start, end);
+        String key = command.subSequence(start, end).toString();
+        Segment segment = segmentFor(hash);
+        boolean evicted;
+        synchronized (segment) {
+            evicted = segment.put(key, hash, parsed);
+        }
+        if (evicted) {
+            evictions.increment();
+        }
+    }
+
+    /** Drops every entry, for when the action set has changed. */
+    public void invalidate() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    private Segment segmentFor(int hash) {
+        return segments[segmentIndex(hash)];
+    }
+
+    /**
+    * Picks a segment from the high bits of the hash, since its low bits pick the bucket inside it. Short
+    * commands such as "look" hash far below the top bits, so the hash is scrambled first.
+    */
+    private static int segmentIndex(int hash) {
+        return (hash * 0x9E3779B9) >>> (Integer.SIZE - Integer.numberOfTrailingZeros(SEGMENTS));
+    }
+
+    /** The segment a command is cached in. */
+    static int segmentOf(CharSequence command) {
+        int start = trimmedStart(command);
+        return segmentIndex(hash(command, start, trimmedEnd(command, start)));
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        return "size=" + size() + " hits=" + getHits() + " misses=" + getMisses() + " evictions=" + getEvictions();
+    }
+}
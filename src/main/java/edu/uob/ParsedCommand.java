@@ -0,0 +1,36 @@
+package edu.uob;
+
+/**
+* The shape of a parsed command without its player: the IDs of its triggers, command keywords and
+* subjects in the {@link Vocabulary} it was parsed against. Never modified once built, so one instance
+* can be shared by every parser that hits it in the {@link ParseCache}.
+*/
+final class ParsedCommand {
+    private final Vocabulary vocabulary;
+    private final int[] actions;
+    private final int[] commands;
+    private final int[] subjects;
+
+    ParsedCommand(Vocabulary vocabulary, int[] actions, int[] commands, int[] subjects) {
+        this.vocabulary = vocabulary;
+        this.actions = actions;
+        this.commands = commands;
+        this.subjects = subjects;
+    }
+
+    Vocabulary getVocabulary() {
+        return vocabulary;
+    }
+
+    int[] getActions() {
+        return actions;
+    }
+
+    int[] getCommands() {
+        return commands;
+    }
+
+    int[] getSubjects() {
+        return subjects;
+    }
+}
@@ -0,0 +1,49 @@
+package edu.uob;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/** A command waiting in one of the {@link CommandEngine}s, together with the future of its response. */
+final class PendingCommand {
+    /** The response to a command that threw while running. */
+    static final String FAILED = "Something went wrong while handling this action";
+    /** The response to a command the engine stopped before running it. */
+    static final String STOPPED = "Server is not accepting commands right now, please retry shortly";
+
+    private final Supplier<String> command;
+    private final CompletableFuture<String> result;
+
+    PendingCommand(Supplier<String> command) {
+        this.command = command;
+        this.result = new CompletableFuture<>();
+    }
+
+    CompletableFuture<String> getResult() {
+        return result;
+    }
+
+    void run() {
+        complete(execute());
+    }
+
+    /** Runs the command. Anything it throws, errors included, becomes the {@link #FAILED} response. */
+    String execute() {
+        try {
+            return command.get();
+        } catch (Throwable e) {
+            return FAILED;
+        }
+    }
+
+    void complete(String response) {
+        result.complete(response);
+    }
+
+    /**
+    * Answers a command that will never run. Its future still completes normally, as every response does,
+    * so callers joining it always get a line to send back.
+    */
+    void reject() {
+        complete(STOPPED);
+    }
+}
@@ -1,77 +1,100 @@
 package edu.uob;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
 
 import edu.uob.ActionException.HealthLevelToZeroException;
 
+/**
+* A player, as a view of a player handle. Health is the handle's health column, the current location its
+* container and the inventory its contents list, so an item is found by name through the store's name
+* index and the inventory keeps pickup order.
+*/
 public class PlayerEntity extends CharacterEntity {
-    private List<ArtefactEntity> inventories;
-    private LocationEntity currentLocation;
-    private int healthLevel;
-    public PlayerEntity(String name, LocationEntity startLocation) {
-        super(name, "A player named: " + name);
-        this.inventories = new ArrayList<>();
-        this.currentLocation = startLocation;
-        this.healthLevel = 3;
+    private final ReentrantLock commandLock;
+    private int presenceSlot;
+    PlayerEntity(WorldStore store, int handle) {
+        super(store, handle);
+        this.commandLock = new ReentrantLock();
+        this.presenceSlot = -1;
     }
     public int getHealthLevel() {
-        return healthLevel;
+        return store.getHealth(handle);
     }
     public void incrementHealthLevel() {
-        if (healthLevel == 3) {
+        if (getHealthLevel() == 3) {
             return;
         }
-        healthLevel++;
+        store.setHealth(handle, getHealthLevel() + 1);
     }
     public void decrementHealthLevel() throws HealthLevelToZeroException {
-        healthLevel--;
-        if (healthLevel == 0) {
+        store.setHealth(handle, getHealthLevel() - 1);
+        if (getHealthLevel() == 0) {
             throw new HealthLevelToZeroException();
         }
     }
 
     public void resetPlayer(LocationEntity startLocation) {
-        inventories = new ArrayList<>();
-        currentLocation = startLocation;
-        healthLevel = 3;
+        for (int inventory : store.getContents(handle)) {
+            store.move(inventory, WorldStore.NONE);
+        }
+        getCurrentLocation().removeCharacter(this);
+        startLocation.addCharacter(this);
+        store.setHealth(handle, 3);
+    }
+
+    public ReentrantLock getCommandLock() {
+        return commandLock;
+    }
+
+    int getPresenceSlot() {
+        return presenceSlot;
+    }
+
+    void setPresenceSlot(int presenceSlot) {
+        this.presenceSlot = presenceSlot;
     }
 
     public LocationEntity getCurrentLocation() {
-        return currentLocation;
+        return (LocationEntity) getContainer();
     }
     public void setCurrentLocation(LocationEntity newLocation) {
-        currentLocation = newLocation;
+        store.move(handle, newLocation.handle);
     }
 
     public String[] getInventoryNames() {
-        String[] names = new String[inventories.size()];
-        for (int i = 0; i < inventories.size(); i++) {
-            names[i] = inventories.get(i).getName();
+        int[] inventories = store.getContents(handle);
+        String[] names = new String[inventories.length];
+        for (int i = 0; i < inventories.length; i++) {
+            names[i] = store.getName(inventories[i]);
         }
         return names;
     }
+    public int getInventoryCount() {
+        return store.getContents(handle).length;
+    }
     public ArtefactEntity getInventoryByName(String name) {
-        for (ArtefactEntity inventory : inventories) {
-            if (inventory.getName().equalsIgnoreCase(name)) {
-                this.inventories.remove(inventory);
-                return inventory;
-            }
+        int inventory = store.find(handle, name.toLowerCase(), EntityType.ARTEFACT);
+        if (inventory == WorldStore.NONE) {
+            return null;
         }
-        return null;
+        store.move(inventory, WorldStore.NONE);
+        return (ArtefactEntity) store.view(inventory);
     }
     public boolean hasInventoryByName(String name) {
-        for (ArtefactEntity inventory : inventories) {
-            if (inventory.getName().equalsIgnoreCase(name)) {
-                return true;
-            }
-        }
-        return false;
+        return store.find(handle, name.toLowerCase(), EntityType.ARTEFACT) != WorldStore.NONE;
     }
     public void addInventory(ArtefactEntity inventory) {
-        inventories.add(inventory);
+        store.move(inventory.handle, handle);
     }
-    public List<ArtefactEntity> getInventories() {
+    /** The carried artefacts in the order they were picked up. */
+    public Collection<ArtefactEntity> getInventories() {
+        List<ArtefactEntity> inventories = new ArrayList<>();
+        for (int inventory : store.getContents(handle)) {
+            inventories.add((ArtefactEntity) store.view(inventory));
+        }
         return inventories;
     }
 }
@@ -0,0 +1,65 @@
+package edu.uob;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+* The players currently in one location. Players live in a dense array and each remembers its own slot,
+* so joining and leaving are constant time (the last player moves into the freed slot) and counting is
+* free. Listing is bounded, so looking around a crowded room never walks every player in it.
+*
+* <p>Players are created outside any location lock, so every method synchronizes on the presence itself.
+*/
+public final class PlayerPresence {
+    private PlayerEntity[] players;
+    private int count;
+
+    public PlayerPresence() {
+        this.players = new PlayerEntity[4];
+    }
+
+    public synchronized void join(PlayerEntity player) {
+        if (count == players.length) {
+            players = Arrays.copyOf(players, count * 2);
+        }
+        players[count] = player;
+        player.setPresenceSlot(count);
+        count++;
+    }
+
+    /** @return Whether the player was here. */
+    public synchronized boolean leave(PlayerEntity player) {
+        int slot = player.getPresenceSlot();
+        if (slot < 0 || slot >= count || players[slot] != player) {
+            return false;
+        }
+        count--;
+        PlayerEntity last = players[count];
+        players[slot] = last;
+        last.setPresenceSlot(slot);
+        players[count] = null;
+        player.setPresenceSlot(-1);
+        return true;
+    }
+
+    public synchronized int count() {
+        return count;
+    }
+
+    /** Up to {@code limit} players here other than {@code exclude}. */
+    public synchronized List<PlayerEntity> list(PlayerEntity exclude, int limit) {
+        List<PlayerEntity> listed = new ArrayList<>(Math.min(limit, count));
+        for (int i = 0; i < count && listed.size() < limit; i++) {
+            if (players[i] != exclude) {
+                listed.add(players[i]);
+            }
+        }
+        return listed;
+    }
+
+    public synchronized boolean contains(PlayerEntity player) {
+        int slot = player.getPresenceSlot();
+        return slot >= 0 && slot < count && players[slot] == player;
+    }
+}
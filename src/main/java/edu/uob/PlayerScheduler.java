@@ -0,0 +1,138 @@
+package edu.uob;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+import edu.uob.ServerException.MailboxFullException;
+
+/**
+* Runs commands on a worker pool while keeping every player's commands in the order they arrived.
+*
+* <p>Each player owns a bounded mailbox. A mailbox is drained by at most one worker at a time, so a
+* player's {@code get} can never overtake their earlier {@code drop}, while commands of different
+* players run in parallel. When a mailbox is full new commands are rejected instead of queued, which
+* keeps the latency of everyone else flat when a single player floods the server.
+*
+* <p>A mailbox that runs empty retires and leaves the map, so the map only holds players with commands in
+* flight however many names have been seen. A command offered to a retired mailbox goes to a fresh one.
+*/
+public final class PlayerScheduler implements CommandEngine {
+    private static final int DRAIN_BATCH = 16;
+    private static final int ACCEPTED = 0;
+    private static final int FULL = 1;
+    private static final int RETIRED = 2;
+
+    private final ExecutorService workers;
+    private final int mailboxCapacity;
+    private final ConcurrentHashMap<String, Mailbox> mailboxes;
+
+    public PlayerScheduler(ExecutorService workers, int mailboxCapacity) {
+        this.workers = workers;
+        this.mailboxCapacity = mailboxCapacity;
+        this.mailboxes = new ConcurrentHashMap<>();
+    }
+
+    @Override
+    public CompletableFuture<String> submit(String playerName, Supplier<String> command) throws MailboxFullException {
+        PendingCommand pending = new PendingCommand(command);
+        int offered;
+        do {
+            offered = mailboxes.computeIfAbsent(playerName, Mailbox::new).offer(pending);
+        } while (offered == RETIRED);
+        if (offered == FULL) {
+            throw new MailboxFullException(playerName);
+        }
+        return pending.getResult();
+    }
+
+    @Override
+    public void shutdown() {
+        workers.shutdown();
+    }
+
+    /** Number of players with a mailbox, that is with commands queued or running. */
+    int getMailboxCount() {
+        return mailboxes.size();
+    }
+
+    private final class Mailbox implements Runnable {
+        private final String playerName;
+        private final Queue<PendingCommand> pending = new ArrayDeque<>();
+        private boolean scheduled;
+        private boolean retired;
+
+        Mailbox(String playerName) {
+            this.playerName = playerName;
+        }
+
+        int offer(PendingCommand command) {
+            synchronized (this) {
+                if (retired) {
+                    return RETIRED;
+                }
+                if (pending.size() >= mailboxCapacity) {
+                    return FULL;
+                }
+                pending.add(command);
+                if (scheduled) {
+                    return ACCEPTED;
+                }
+                scheduled = true;
+            }
+            schedule();
+            return ACCEPTED;
+        }
+
+        /**
+        * Hands the mailbox to a worker. If the pool refuses it, for instance after {@link #shutdown()},
+        * the mailbox retires and every queued command is answered instead of waiting forever.
+        */
+        private void schedule() {
+            try {
+                workers.execute(this);
+            } catch (RejectedExecutionException e) {
+                List<PendingCommand> rejected;
+                synchronized (this) {
+                    rejected = new ArrayList<>(pending);
+                    pending.clear();
+                    scheduled = false;
+                    retire();
+                }
+                for (PendingCommand command : rejected) {
+                    command.reject();
+                }
+            }
+        }
+
+        /** Called with the mailbox locked once nothing is queued or running. */
+        private void retire() {
+            retired = true;
+            mailboxes.remove(playerName, this);
+        }
+
+        @Override
+        public void run() {
+            // Drain a bounded batch, then yield the worker so one busy player cannot starve the rest
+            for (int i = 0; i < DRAIN_BATCH; i++) {
+                PendingCommand next;
+                synchronized (this) {
+                    next = pending.poll();
+                    if (next == null) {
+                        scheduled = false;
+                        retire();
+                        return;
+                    }
+                }
+                next.run();
+            }
+            schedule();
+        }
+    }
+}
@@ -0,0 +1,346 @@
+package edu.uob;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+* Non-blocking alternative to {@link GameServer#blockingListenOn(int)}.
+*
+* <p>The listening thread only accepts connections and hands each one to a fixed set of selector
+* loops, so a slow or stalled client never holds up anyone else. The wire format is unchanged: one
+* command line in, the response followed by the END_OF_TRANSMISSION trailer out, or many of them on
+* a connection opened as a {@link Session}. Connections opened with {@link GatewayFrame#HANDSHAKE}
+* carry binary frames for many players instead.
+*/
+public final class SelectorServer {
+    private static final char END_OF_TRANSMISSION = 4;
+    private static final int BUFFER_SIZE = 1024;
+    private static final int MAX_LINE_LENGTH = 64 * 1024;
+
+    private final GameServer gameServer;
+    private final int ioThreads;
+
+    public SelectorServer(GameServer gameServer, int ioThreads) {
+        this.gameServer = gameServer;
+        this.ioThreads = Math.max(1, ioThreads);
+    }
+
+    /**
+    * Accepts connections on the calling thread until it is interrupted.
+    *
+    * @param portNumber The port to listen on.
+    * @throws IOException If the server socket cannot be opened.
+    */
+    public void listenOn(int portNumber) throws IOException {
+        SelectorLoop[] loops = new SelectorLoop[ioThreads];
+        for (int i = 0; i < loops.length; i++) {
+            loops[i] = new SelectorLoop();
+            Thread thread = new Thread(loops[i], "stag-io-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+        try (ServerSocketChannel serverChannel = ServerSocketChannel.open()) {
+            serverChannel.bind(new InetSocketAddress(portNumber));
+            System.out.println("Server listening on port " + portNumber);
+            int next = 0;
+            while (!Thread.interrupted()) {
+                SocketChannel channel = serverChannel.accept();
+                loops[next].register(channel);
+                next = (next + 1) % loops.length;
+            }
+        } catch (ClosedByInterruptException e) {
+            System.out.println("Server stopped");
+        } finally {
+            for (SelectorLoop loop : loops) {
+                loop.close();
+            }
+        }
+    }
+
+    private final class SelectorLoop implements Runnable {
+        private final Selector selector;
+        private final Queue<SocketChannel> pending;
+        private final Queue<SelectionKey> ready;
+        private volatile boolean running;
+
+        SelectorLoop() throws IOException {
+            this.selector = Selector.open();
+            this.pending = new ConcurrentLinkedQueue<>();
+            this.ready = new ConcurrentLinkedQueue<>();
+            this.running = true;
+        }
+
+        void register(SocketChannel channel) {
+            pending.add(channel);
+            selector.wakeup();
+        }
+
+        /** Called from worker threads once a response of the connection behind {@code key} is done. */
+        void wake(SelectionKey key) {
+            ready.add(key);
+            selector.wakeup();
+        }
+
+        void close() {
+            running = false;
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (running) {
+                    selector.select();
+                    registerPending();
+                    flushReady();
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        handleKey(key);
+                    }
+                }
+            } catch (IOException e) {
+                System.out.println("Selector loop failed");
+            } finally {
+                closeAll();
+            }
+        }
+
+        private void registerPending() throws IOException {
+            SocketChannel channel;
+            while ((channel = pending.poll()) != null) {
+                channel.configureBlocking(false);
+                channel.register(selector, SelectionKey.OP_READ, new Connection(channel, this));
+            }
+        }
+
+        private void flushReady() {
+            SelectionKey key;
+            while ((key = ready.poll()) != null) {
+                if (!key.isValid()) {
+                    continue;
+                }
+                Connection connection = (Connection) key.attachment();
+                try {
+                    connection.flush(key);
+                } catch (IOException | RuntimeException e) {
+                    connection.close(key);
+                }
+            }
+        }
+
+        /**
+        * Reads from and writes to one connection. The key may have been cancelled by {@link #flushReady()}
+        * while still selected, and anything a connection throws closes that connection only, so a single
+        * bad client can never stop the loop serving the others.
+        */
+        private void handleKey(SelectionKey key) {
+            Connection connection = (Connection) key.attachment();
+            try {
+                if (key.isValid() && key.isReadable()) {
+                    connection.read(key);
+                }
+                if (key.isValid() && key.isWritable()) {
+                    connection.write(key);
+                }
+            } catch (IOException | RuntimeException e) {
+                connection.close(key);
+            }
+        }
+
+        private void closeAll() {
+            for (SelectionKey key : selector.keys()) {
+                ((Connection) key.attachment()).close(key);
+            }
+            try {
+                selector.close();
+            } catch (IOException e) {
+                System.out.println("Failed closing selector");
+            }
+        }
+    }
+
+    private final class Connection {
+        private final SocketChannel channel;
+        private final SelectorLoop loop;
+        private final Session session;
+        private final Queue<CompletableFuture<ByteBuffer>> responses;
+        private final Queue<ByteBuffer> outbound;
+        private ByteBuffer inbound;
+        private boolean gateway;
+        private boolean closing;
+
+        Connection(SocketChannel channel, SelectorLoop loop) {
+            this.channel = channel;
+            this.loop = loop;
+            this.session = new Session(gameServer);
+            this.responses = new ArrayDeque<>();
+            this.outbound = new ArrayDeque<>();
+            this.inbound = ByteBuffer.allocate(BUFFER_SIZE);
+        }
+
+        void read(SelectionKey key) throws IOException {
+            int count = channel.read(inbound);
+            if (!gateway) {
+                readLines(key, count < 0);
+            }
+            if (gateway) {
+                readFrames(key);
+            }
+            if (count < 0) {
+                closing = true;
+            } else if (!closing) {
+                ensureCapacity();
+            }
+            flush(key);
+        }
+
+        /**
+        * Hands every complete line to the session while it still sits in the inbound buffer, then drops
+        * the consumed bytes in one go. Each line is exposed by narrowing the buffer's limit, so no line is
+        * copied out of it.
+        */
+        private void readLines(SelectionKey key, boolean endOfStream) {
+            inbound.flip();
+            try {
+                while (!closing && inbound.hasRemaining()) {
+                    int start = inbound.position();
+                    int limit = inbound.limit();
+                    int end = findLineEnd(start, limit);
+                    if (end == limit && !endOfStream) {
+                        return;
+                    }
+                    int lineEnd = end > start && inbound.get(end - 1) == '\r' ? end - 1 : end;
+                    inbound.limit(lineEnd);
+                    boolean handshake = !session.isPersistent() && isHandshake();
+                    if (!handshake) {
+                        await(key, session.handleLine(inbound).thenApply(this::frame));
+                    }
+                    inbound.limit(limit).position(Math.min(end + 1, limit));
+                    if (handshake) {
+                        gateway = true;
+                        return;
+                    }
+                    closing = !session.isPersistent();
+                }
+            } finally {
+                inbound.compact();
+            }
+        }
+
+        private int findLineEnd(int start, int limit) {
+            for (int i = start; i < limit; i++) {
+                if (inbound.get(i) == '\n') {
+                    return i;
+                }
+            }
+            return limit;
+        }
+
+        private boolean isHandshake() {
+            return inbound.remaining() == GatewayFrame.HANDSHAKE.length()
+                    && AsciiText.of(inbound).toString().equals(GatewayFrame.HANDSHAKE);
+        }
+
+        private void readFrames(SelectionKey key) throws IOException {
+            inbound.flip();
+            try {
+                GatewayFrame request;
+                while ((request = GatewayFrame.decode(inbound)) != null) {
+                    await(key, gameServer.dispatchFrame(request).thenApply(GatewayFrame::encode));
+                }
+            } finally {
+                inbound.compact();
+            }
+        }
+
+        private void await(SelectionKey key, CompletableFuture<ByteBuffer> response) {
+            responses.add(response);
+            if (!response.isDone()) {
+                response.whenComplete((result, error) -> loop.wake(key));
+            }
+        }
+
+        void write(SelectionKey key) throws IOException {
+            flush(key);
+        }
+
+        void flush(SelectionKey key) throws IOException {
+            drainResponses();
+            if (!outbound.isEmpty()) {
+                channel.write(outbound.toArray(new ByteBuffer[0]));
+                while (!outbound.isEmpty() && !outbound.peek().hasRemaining()) {
+                    outbound.poll();
+                }
+            }
+            if (!outbound.isEmpty()) {
+                key.interestOps(SelectionKey.OP_WRITE);
+                return;
+            }
+            if (closing && responses.isEmpty()) {
+                close(key);
+                return;
+            }
+            key.interestOps(closing ? 0 : SelectionKey.OP_READ);
+        }
+
+        /**
+        * Moves finished responses to the outbound queue. Session responses must leave in command order,
+        * gateway frames are tagged so they leave as soon as they are done.
+        */
+        private void drainResponses() {
+            Iterator<CompletableFuture<ByteBuffer>> pending = responses.iterator();
+            while (pending.hasNext()) {
+                CompletableFuture<ByteBuffer> response = pending.next();
+                if (!response.isDone()) {
+                    if (gateway) {
+                        continue;
+                    }
+                    return;
+                }
+                outbound.add(response.join());
+                pending.remove();
+            }
+        }
+
+        void close(SelectionKey key) {
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                System.out.println("Connection closed");
+            }
+        }
+
+        private void ensureCapacity() throws IOException {
+            if (inbound.hasRemaining()) {
+                return;
+            }
+            if (inbound.capacity() >= MAX_LINE_LENGTH) {
+                throw new IOException("Command too long");
+            }
+            ByteBuffer larger = ByteBuffer.allocate(inbound.capacity() * 2);
+            inbound.flip();
+            larger.put(inbound);
+            inbound = larger;
+        }
+
+        private ByteBuffer frame(String result) {
+            String framed = result + "\n" + END_OF_TRANSMISSION + "\n";
+            return ByteBuffer.wrap(framed.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
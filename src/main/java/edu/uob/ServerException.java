@@ -0,0 +1,18 @@
+package edu.uob;
+
+import java.io.Serial;
+
+public class ServerException extends Exception {
+    @Serial
+    private static final long serialVersionUID = 1;
+
+    public ServerException(String message) {
+        super(message);
+    }
+    public static class MailboxFullException extends ServerException {
+        @Serial private static final long serialVersionUID = 1;
+        public MailboxFullException(String player) {
+            super("Server overloaded: too many pending commands for " + player + ", please retry shortly");
+        }
+    }
+}
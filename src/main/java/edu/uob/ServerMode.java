@@ -0,0 +1,17 @@
+package edu.uob;
+
+public enum ServerMode {
+    BLOCKING,
+    SELECTOR,
+    VIRTUAL;
+
+
+    public static ServerMode parse(String mode) {
+        return switch (mode.toUpperCase()) {
+            case "BLOCKING" -> BLOCKING;
+            case "SELECTOR", "NIO" -> SELECTOR;
+            case "VIRTUAL" -> VIRTUAL;
+            default -> null;
+        };
+    }
+}
@@ -0,0 +1,117 @@
+package edu.uob;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+
+import edu.uob.ParserException.InvalidPlayerNameException;
+
+/**
+* Protocol state of one client connection.
+*
+* <p>A connection whose first line is a plain {@code name: command} is answered once and closed, as
+* before. A connection opened with {@code #session <name>} binds the player name once and then keeps
+* answering bare commands, each with its own END_OF_TRANSMISSION trailer, until the client hangs up.
+*
+* <p>Session commands may be prefixed with a request ID ({@code #42 look}) so that clients can pipeline
+* several commands without waiting. Responses always come back in the order the commands were sent and
+* a tagged command gets its ID echoed back on the first line of its response.
+*/
+public final class Session {
+    public static final String SESSION_PREFIX = "#session ";
+    public static final char REQUEST_ID_PREFIX = '#';
+
+    private final GameServer server;
+    private String playerName;
+    private boolean persistent;
+
+    public Session(GameServer server) {
+        this.server = server;
+    }
+
+    public CompletableFuture<String> handleLine(String line) {
+        if (persistent) {
+            return handleSessionLine(line);
+        }
+        if (!line.startsWith(SESSION_PREFIX)) {
+            return server.dispatchCommand(line);
+        }
+        return CompletableFuture.completedFuture(bind(line.substring(SESSION_PREFIX.length()).trim()));
+    }
+
+    /**
+    * Same as {@link #handleLine(String)} for a line still in a network buffer, from its position to its
+    * limit. Commands are parsed straight from the buffer; only {@code #session} lines are decoded first.
+    * The buffer may be reused once this method returns.
+    */
+    public CompletableFuture<String> handleLine(ByteBuffer line) {
+        if (persistent) {
+            return handleSessionLine(line);
+        }
+        if (!startsWith(line, SESSION_PREFIX)) {
+            return server.dispatchCommand(line);
+        }
+        return handleLine(AsciiText.of(line).toString());
+    }
+
+    private CompletableFuture<String> handleSessionLine(ByteBuffer line) {
+        int idEnd = findRequestIdEnd(AsciiText.of(line));
+        if (idEnd < 0) {
+            return server.dispatchCommand(playerName, line);
+        }
+        String requestId = AsciiText.of(line).subSequence(0, idEnd).toString();
+        line.position(line.position() + idEnd + 1);
+        return server.dispatchCommand(playerName, line)
+                .thenApply(result -> requestId + "\n" + result);
+    }
+
+    private static boolean startsWith(ByteBuffer line, String prefix) {
+        if (line.remaining() < prefix.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (line.get(line.position() + i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private CompletableFuture<String> handleSessionLine(String line) {
+        int idEnd = findRequestIdEnd(line);
+        if (idEnd < 0) {
+            return server.dispatchCommand(playerName, line);
+        }
+        String requestId = line.substring(0, idEnd);
+        return server.dispatchCommand(playerName, line.substring(idEnd + 1))
+                .thenApply(result -> requestId + "\n" + result);
+    }
+
+    private static int findRequestIdEnd(CharSequence line) {
+        if (line.isEmpty() || line.charAt(0) != REQUEST_ID_PREFIX) {
+            return -1;
+        }
+        int idEnd = 1;
+        while (idEnd < line.length() && line.charAt(idEnd) != ' ') {
+            idEnd++;
+        }
+        return idEnd > 1 && idEnd < line.length() ? idEnd : -1;
+    }
+
+    private String bind(String name) {
+        try {
+            playerName = GameParser.normalisePlayerName(name);
+            persistent = true;
+            return "Session started for " + playerName;
+        } catch (InvalidPlayerNameException e) {
+            return e.getMessage();
+        }
+    }
+
+    public boolean isPersistent() {
+        return persistent;
+    }
+
+    public String getPlayerName() {
+        return playerName;
+    }
+}
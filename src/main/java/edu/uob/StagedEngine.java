@@ -0,0 +1,76 @@
+package edu.uob;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+* Second stage of the staged pipeline: commands arrive already parsed (the I/O threads ran
+* {@link GameParser} against the immutable {@link Vocabulary}) and are executed one after another by a
+* single game thread, so the game state itself never needs to be thread-safe.
+*
+* <p>Submitters hand commands over through a lock-free queue and only wake the game thread when it has
+* gone to sleep on an empty queue.
+*
+* <p>Once shut down the game thread finishes the command it is running and exits; commands still queued
+* and any submitted afterwards are answered with {@link PendingCommand#STOPPED}.
+*/
+public final class StagedEngine implements CommandEngine {
+    private final Queue<PendingCommand> queue;
+    private final Thread gameThread;
+    private volatile boolean sleeping;
+    private volatile boolean running;
+
+    public StagedEngine() {
+        this.queue = new ConcurrentLinkedQueue<>();
+        this.running = true;
+        this.gameThread = new Thread(this::runCommands, "stag-game");
+        this.gameThread.setDaemon(true);
+        this.gameThread.start();
+    }
+
+    @Override
+    public CompletableFuture<String> submit(String playerName, Supplier<String> command) {
+        PendingCommand pending = new PendingCommand(command);
+        queue.add(pending);
+        if (!running) {
+            // The game thread may already have drained the queue for the last time
+            rejectQueued();
+        } else if (sleeping) {
+            LockSupport.unpark(gameThread);
+        }
+        return pending.getResult();
+    }
+
+    @Override
+    public void shutdown() {
+        running = false;
+        LockSupport.unpark(gameThread);
+    }
+
+    private void runCommands() {
+        while (running) {
+            PendingCommand next = queue.poll();
+            if (next != null) {
+                next.run();
+                continue;
+            }
+            sleeping = true;
+            // Re-check after announcing the nap so a command added meanwhile is not left waiting
+            if (queue.isEmpty() && running) {
+                LockSupport.park(this);
+            }
+            sleeping = false;
+        }
+        rejectQueued();
+    }
+
+    private void rejectQueued() {
+        PendingCommand next;
+        while ((next = queue.poll()) != null) {
+            next.reject();
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package edu.uob;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.StringJoiner;
+
+/**
+* Wall-clock time spent in each phase of building a world, in the order the phases finished. Phases that
+* run in parallel are timed separately, so their times can add up to more than the whole startup.
+*/
+public final class StartupTimings {
+    private final Map<String, Long> phases;
+
+    public StartupTimings() {
+        this.phases = new LinkedHashMap<>();
+    }
+
+    /** Records a phase that started at {@code startNanos}, a {@link System#nanoTime()} reading. */
+    public synchronized void record(String phase, long startNanos) {
+        phases.put(phase, System.nanoTime() - startNanos);
+    }
+
+    public synchronized long getMillis(String phase) {
+        Long nanos = phases.get(phase);
+        return nanos == null ? -1 : nanos / 1_000_000;
+    }
+
+    public synchronized boolean hasPhase(String phase) {
+        return phases.containsKey(phase);
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringJoiner joiner = new StringJoiner(" ");
+        for (Map.Entry<String, Long> phase : phases.entrySet()) {
+            joiner.add(phase.getKey() + "=" + phase.getValue() / 1_000_000 + "ms");
+        }
+        return joiner.toString();
+    }
+}
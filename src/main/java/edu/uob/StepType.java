@@ -0,0 +1,9 @@
+package edu.uob;
+
+/** What the entity name in one {@link ActionStep} turned out to be when the game was loaded. */
+public enum StepType {
+    HEALTH,
+    PATH,
+    ENTITY,
+    UNKNOWN;
+}
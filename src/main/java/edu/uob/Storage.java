@@ -1,8 +1,8 @@
 package edu.uob;
 
 public class Storage extends LocationEntity {
-    public Storage(String name, String description) {
-        super(name, description);
+    Storage(WorldStore store, int handle) {
+        super(store, handle);
     }
     @Override
     public void addPath(LocationEntity path) {
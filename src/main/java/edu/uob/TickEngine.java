@@ -0,0 +1,114 @@
+package edu.uob;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Supplier;
+
+/**
+* Runs commands in simulation ticks. Commands arriving between two ticks are buffered; each tick takes
+* the game lock once, executes the whole batch in arrival order and only then releases every response
+* together. The end of a tick is also the natural place for world events to hook in later.
+*
+* <p>Once shut down the engine runs nothing more: buffered commands and any submitted afterwards are
+* answered with {@link PendingCommand#STOPPED}.
+*/
+public final class TickEngine implements CommandEngine {
+    private static final int MAX_BATCH = 10_000;
+
+    private final Queue<PendingCommand> buffered;
+    private final Lock gameLock;
+    private final TickMetrics metrics;
+    private final ScheduledExecutorService ticker;
+    private volatile boolean stopped;
+
+    public TickEngine(Lock gameLock, int ticksPerSecond) {
+        this.buffered = new ConcurrentLinkedQueue<>();
+        this.gameLock = gameLock;
+        this.metrics = new TickMetrics();
+        this.ticker = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "stag-tick");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = TimeUnit.SECONDS.toNanos(1) / Math.max(1, ticksPerSecond);
+        ticker.scheduleAtFixedRate(this::tick, period, period, TimeUnit.NANOSECONDS);
+    }
+
+    /** Buffers a command for the next tick, or answers it straight away once the engine has stopped. */
+    @Override
+    public CompletableFuture<String> submit(String playerName, Supplier<String> command) {
+        PendingCommand pending = new PendingCommand(command);
+        buffered.add(pending);
+        // A command added while shutting down may have missed the final drain
+        if (stopped) {
+            rejectBuffered();
+        }
+        return pending.getResult();
+    }
+
+    /** Stops ticking and answers every command still buffered, since no tick will run it. */
+    @Override
+    public void shutdown() {
+        stopped = true;
+        ticker.shutdown();
+        rejectBuffered();
+    }
+
+    private void rejectBuffered() {
+        PendingCommand next;
+        while ((next = buffered.poll()) != null) {
+            next.reject();
+        }
+    }
+
+    public TickMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+    * Runs one tick. A periodic task that throws is never run again, so anything escaping the tick is caught
+    * here. Each command's own failures are already caught by {@link PendingCommand#execute()}; if the tick
+    * itself fails, the commands that ran still get their responses and only the rest are answered with an
+    * error, so the next tick runs as usual.
+    */
+    private void tick() {
+        List<PendingCommand> batch = new ArrayList<>();
+        List<String> responses = new ArrayList<>();
+        try {
+            runBatch(batch, responses);
+        } catch (Throwable e) {
+            System.out.println("Tick failed: " + e);
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            batch.get(i).complete(i < responses.size() ? responses.get(i) : PendingCommand.FAILED);
+        }
+    }
+
+    private void runBatch(List<PendingCommand> batch, List<String> responses) {
+        long start = System.nanoTime();
+        PendingCommand next;
+        while (batch.size() < MAX_BATCH && (next = buffered.poll()) != null) {
+            batch.add(next);
+        }
+        if (batch.isEmpty()) {
+            metrics.record(0, System.nanoTime() - start);
+            return;
+        }
+        gameLock.lock();
+        try {
+            for (PendingCommand pending : batch) {
+                responses.add(pending.execute());
+            }
+        } finally {
+            gameLock.unlock();
+        }
+        metrics.record(batch.size(), System.nanoTime() - start);
+    }
+}
@@ -0,0 +1,54 @@
+package edu.uob;
+
+/**
+* Counters published by {@link TickEngine} after every tick. Only the tick thread writes them, so plain
+* volatile fields are enough for other threads to read a recent value.
+*/
+public final class TickMetrics {
+    private volatile long ticks;
+    private volatile long commands;
+    private volatile int lastBatchSize;
+    private volatile int maxBatchSize;
+    private volatile long lastTickNanos;
+    private volatile long maxTickNanos;
+
+    void record(int batchSize, long tickNanos) {
+        ticks++;
+        commands += batchSize;
+        lastBatchSize = batchSize;
+        maxBatchSize = Math.max(maxBatchSize, batchSize);
+        lastTickNanos = tickNanos;
+        maxTickNanos = Math.max(maxTickNanos, tickNanos);
+    }
+
+    public long getTicks() {
+        return ticks;
+    }
+
+    public long getCommands() {
+        return commands;
+    }
+
+    public int getLastBatchSize() {
+        return lastBatchSize;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    public long getLastTickNanos() {
+        return lastTickNanos;
+    }
+
+    public long getMaxTickNanos() {
+        return maxTickNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "ticks=" + ticks + " commands=" + commands
+                + " batch(last/max)=" + lastBatchSize + "/" + maxBatchSize
+                + " tickMicros(last/max)=" + lastTickNanos / 1000 + "/" + maxTickNanos / 1000;
+    }
+}
@@ -0,0 +1,202 @@
+package edu.uob;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+* Aho-Corasick automaton over all trigger phrases, so every trigger in a command is found in a single
+* pass over the text instead of compiling and running one regular expression per trigger.
+*
+* <p>A trigger only counts when it sits on word boundaries, with the same meaning of "word character"
+* as {@code \b} in a regular expression. Overlapping matches are resolved leftmost-longest, so
+* "knock down" wins over a plain "knock" starting at the same word.
+*/
+public final class TriggerMatcher {
+    private final String[] triggers;
+    private final char[][] labels;
+    private final int[][] targets;
+    private final int[] failure;
+    private final int[] output;
+    private final int[] outputLink;
+
+    public TriggerMatcher(List<String> triggers) {
+        this.triggers = triggers.toArray(new String[0]);
+        List<Map<Character, Integer>> trie = buildTrie();
+        int size = trie.size();
+        this.labels = new char[size][];
+        this.targets = new int[size][];
+        this.failure = new int[size];
+        this.output = new int[size];
+        this.outputLink = new int[size];
+        compact(trie);
+        Arrays.fill(output, -1);
+        for (int i = 0; i < this.triggers.length; i++) {
+            if (!this.triggers[i].isEmpty()) {
+                output[walk(this.triggers[i])] = i;
+            }
+        }
+        linkFailures();
+    }
+
+    /**
+    * A trigger found in a text, covering {@code [start, end)}. The index is the trigger's position in the
+    * list the matcher was built from.
+    */
+    public static final class Match {
+        private final int start;
+        private final int end;
+        private final int index;
+        private final String trigger;
+
+        Match(int start, int end, int index, String trigger) {
+            this.start = start;
+            this.end = end;
+            this.index = index;
+            this.trigger = trigger;
+        }
+
+        public int getStart() {
+            return start;
+        }
+
+        public int getEnd() {
+            return end;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public String getTrigger() {
+            return trigger;
+        }
+    }
+
+    /**
+    * Finds the non-overlapping triggers in an already lower-cased text, in text order.
+    */
+    public List<Match> findTriggers(CharSequence text) {
+        List<Match> all = findAll(text);
+        all.sort((a, b) -> a.start != b.start ? Integer.compare(a.start, b.start) : Integer.compare(b.end, a.end));
+        List<Match> chosen = new ArrayList<>();
+        int covered = 0;
+        for (Match match : all) {
+            if (match.start >= covered) {
+                chosen.add(match);
+                covered = match.end;
+            }
+        }
+        return chosen;
+    }
+
+    private List<Match> findAll(CharSequence text) {
+        List<Match> matches = new ArrayList<>();
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            int next = child(state, c);
+            while (next < 0 && state != 0) {
+                state = failure[state];
+                next = child(state, c);
+            }
+            state = Math.max(next, 0);
+            int node = output[state] >= 0 ? state : outputLink[state];
+            while (node >= 0) {
+                String trigger = triggers[output[node]];
+                int start = i + 1 - trigger.length();
+                if (isBoundary(text, start) && isBoundary(text, i + 1)) {
+                    matches.add(new Match(start, i + 1, output[node], trigger));
+                }
+                node = outputLink[node];
+            }
+        }
+        return matches;
+    }
+
+    private static boolean isBoundary(CharSequence text, int index) {
+        boolean wordBefore = index > 0 && isWordChar(text.charAt(index - 1));
+        boolean wordAfter = index < text.length() && isWordChar(text.charAt(index));
+        return wordBefore != wordAfter;
+    }
+
+    private static boolean isWordChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+    }
+
+    private int child(int node, char c) {
+        int index = Arrays.binarySearch(labels[node], c);
+        return index < 0 ? -1 : targets[node][index];
+    }
+
+    private int walk(String trigger) {
+        int node = 0;
+        for (int i = 0; i < trigger.length(); i++) {
+            node = child(node, trigger.charAt(i));
+        }
+        return node;
+    }
+
+    private List<Map<Character, Integer>> buildTrie() {
+        List<Map<Character, Integer>> trie = new ArrayList<>();
+        trie.add(new HashMap<>());
+        for (String trigger : triggers) {
+            if (trigger.isEmpty()) {
+                continue;
+            }
+            int node = 0;
+            for (int i = 0; i < trigger.length(); i++) {
+                Integer next = trie.get(node).get(trigger.charAt(i));
+                if (next == null) {
+                    next = trie.size();
+                    trie.add(new HashMap<>());
+                    trie.get(node).put(trigger.charAt(i), next);
+                }
+                node = next;
+            }
+        }
+        return trie;
+    }
+
+    private void compact(List<Map<Character, Integer>> trie) {
+        for (int node = 0; node < trie.size(); node++) {
+            Character[] keys = trie.get(node).keySet().toArray(new Character[0]);
+            Arrays.sort(keys);
+            labels[node] = new char[keys.length];
+            targets[node] = new int[keys.length];
+            for (int i = 0; i < keys.length; i++) {
+                labels[node][i] = keys[i];
+                targets[node][i] = trie.get(node).get(keys[i]);
+            }
+        }
+    }
+
+    private void linkFailures() {
+        Arrays.fill(outputLink, -1);
+        Queue<Integer> queue = new ArrayDeque<>();
+        for (int target : targets[0]) {
+            failure[target] = 0;
+            queue.add(target);
+        }
+        while (!queue.isEmpty()) {
+            int node = queue.poll();
+            for (int i = 0; i < labels[node].length; i++) {
+                char c = labels[node][i];
+                int target = targets[node][i];
+                int fallback = failure[node];
+                while (fallback != 0 && child(fallback, c) < 0) {
+                    fallback = failure[fallback];
+                }
+                int suffix = child(fallback, c);
+                failure[target] = suffix < 0 || suffix == target ? 0 : suffix;
+                int suffixNode = failure[target];
+                outputLink[target] = output[suffixNode] >= 0 ? suffixNode : outputLink[suffixNode];
+                queue.add(target);
+            }
+        }
+    }
+}
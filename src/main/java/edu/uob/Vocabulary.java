@@ -0,0 +1,155 @@
+package edu.uob;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+* Immutable snapshot of everything {@link GameParser} needs: the trigger phrases of all actions and the
+* names of all entities. It never changes once built, so any thread can parse commands against it without
+* touching the mutable game state; reloading the actions builds a new one in a new {@link ActionSet}.
+*
+* <p>Every command keyword, trigger phrase and entity name is interned to a dense int ID, so the parser
+* and action matching compare ints rather than strings. IDs are only meaningful within one vocabulary.
+*/
+public final class Vocabulary {
+    public static final int NOT_FOUND = -1;
+
+    private final String[] names;
+    private final CmdType[] commandTypes;
+    private final boolean[] subjects;
+    private final int[] triggerIds;
+    private final int[] table;
+    private final TriggerMatcher triggerMatcher;
+
+    /**
+    * @param triggers The trigger phrases of all actions.
+    * @param subjects The names of all entities a command can refer to.
+    * @param otherNames Further names to intern without making them valid subjects, such as entities that
+    * only appear in the actions file.
+    */
+    public Vocabulary(Collection<String> triggers, Collection<String> subjects, Collection<String> otherNames) {
+        Map<String, Integer> ids = new HashMap<>();
+        List<String> interned = new ArrayList<>();
+        for (CmdType cmdType : CmdType.getAllCommands()) {
+            intern(cmdType.name().toLowerCase(), ids, interned);
+        }
+        List<String> triggerList = List.copyOf(triggers);
+        this.triggerIds = new int[triggerList.size()];
+        for (int i = 0; i < triggerIds.length; i++) {
+            triggerIds[i] = intern(triggerList.get(i), ids, interned);
+        }
+        for (String subject : subjects) {
+            intern(subject, ids, interned);
+        }
+        for (String name : otherNames) {
+            intern(name, ids, interned);
+        }
+        this.names = interned.toArray(new String[0]);
+        this.commandTypes = new CmdType[names.length];
+        this.subjects = new boolean[names.length];
+        for (int id = 0; id < names.length; id++) {
+            commandTypes[id] = CmdType.parse(names[id]);
+        }
+        for (String subject : subjects) {
+            this.subjects[ids.get(subject)] = true;
+        }
+        this.table = buildTable();
+        this.triggerMatcher = new TriggerMatcher(triggerList);
+    }
+
+    private static int intern(String name, Map<String, Integer> ids, List<String> interned) {
+        return ids.computeIfAbsent(name, newName -> {
+            interned.add(newName);
+            return interned.size() - 1;
+        });
+    }
+
+    /**
+    * Open addressing table from name hash to ID, so a token can be looked up straight from the command
+    * text without cutting it out into a String first.
+    */
+    private int[] buildTable() {
+        int capacity = Integer.highestOneBit(Math.max(names.length, 1)) << 2;
+        int[] slots = new int[capacity];
+        Arrays.fill(slots, NOT_FOUND);
+        for (int id = 0; id < names.length; id++) {
+            int slot = hash(names[id], 0, names[id].length()) & (capacity - 1);
+            while (slots[slot] != NOT_FOUND) {
+                slot = (slot + 1) & (capacity - 1);
+            }
+            slots[slot] = id;
+        }
+        return slots;
+    }
+
+    private static int hash(CharSequence text, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + text.charAt(i);
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    public int idOf(String name) {
+        return idOf(name, 0, name.length());
+    }
+
+    /** The ID of the name spelled by {@code text[start, end)}, or {@link #NOT_FOUND}. */
+    public int idOf(CharSequence text, int start, int end) {
+        int mask = table.length - 1;
+        int slot = hash(text, start, end) & mask;
+        int id;
+        while ((id = table[slot]) != NOT_FOUND) {
+            if (matches(names[id], text, start, end)) {
+                return id;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return NOT_FOUND;
+    }
+
+    private static boolean matches(String name, CharSequence text, int start, int end) {
+        if (name.length() != end - start) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            if (name.charAt(i) != text.charAt(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public String nameOf(int id) {
+        return names[id];
+    }
+
+    public TriggerMatcher getTriggerMatcher() {
+        return triggerMatcher;
+    }
+
+    /** The ID of the trigger behind a match found by {@link #getTriggerMatcher()}. */
+    public int getTriggerId(TriggerMatcher.Match match) {
+        return triggerIds[match.getIndex()];
+    }
+
+    public boolean isCommand(int id) {
+        return commandTypes[id] != null;
+    }
+
+    public CmdType getCommandType(int id) {
+        return commandTypes[id];
+    }
+
+    public boolean isValidSubject(int id) {
+        return subjects[id];
+    }
+}
@@ -0,0 +1,245 @@
+package edu.uob;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.stream.XMLStreamException;
+
+/**
+* A world compiled from an entities file and an actions file into one binary image, so a server can start
+* without parsing any text. The image holds the world's string table and every {@link WorldStore} column as
+* it is, then a string table of its own for the actions. It is memory-mapped when read and the columns are
+* copied out of it a page at a time, so no handle is replayed and nothing is parsed.
+*
+* <p>Actions are stored by name only, not in their compiled form: the vocabulary, the trigger automaton,
+* the compiled steps and the {@link ActionIndex} all refer to objects of one running game, so every start
+* still builds them again from the stored names through {@link ActionSet#build}.
+*
+* <p>The header records the format version and the size and modification time of both source files. An
+* image whose version or sources do not match is stale, and {@link #read} returns {@code null} so the
+* caller falls back to the text files. Compile an image with
+* {@code java edu.uob.WorldImage <entities file> <actions file>}.
+*/
+public final class WorldImage {
+    private static final int MAGIC = 0x53544147;
+    private static final int VERSION = 2;
+    private static final String EXTENSION = ".img";
+
+    private final WorldStore world;
+    private final List<GameAction> actions;
+
+    public WorldImage(WorldStore world, List<GameAction> actions) {
+        this.world = world;
+        this.actions = actions;
+    }
+
+    public static void main(String[] args) throws IOException, GameException, XMLStreamException {
+        if (args.length < 2) {
+            System.out.println("Usage: WorldImage <entities file> <actions file> [image file]");
+            return;
+        }
+        File entitiesFile = new File(args[0]);
+        File actionsFile = new File(args[1]);
+        Path image = args.length > 2 ? Path.of(args[2]) : pathFor(entitiesFile);
+        compile(entitiesFile, actionsFile, image);
+        System.out.println("Compiled world image " + image);
+    }
+
+    /** Where a server looks for the image of an entities file: beside it, with ".img" appended. */
+    public static Path pathFor(File entitiesFile) {
+        return Path.of(entitiesFile.getPath() + EXTENSION);
+    }
+
+    /** Parses both text files and writes their image. */
+    public static void compile(File entitiesFile, File actionsFile, Path image) throws IOException, GameException, XMLStreamException {
+        WorldImage compiled = new WorldImage(EntitiesLoader.load(entitiesFile), ActionsLoader.load(actionsFile));
+        compiled.write(image, entitiesFile, actionsFile);
+    }
+
+    public WorldStore getWorld() {
+        return world;
+    }
+
+    public List<GameAction> getActions() {
+        return actions;
+    }
+
+    /** Writes the image next to its final path and moves it into place, so readers never see half of it. */
+    public void write(Path image, File entitiesFile, File actionsFile) throws IOException {
+        Map<String, Integer> strings = new LinkedHashMap<>();
+        for (GameAction action : actions) {
+            intern(strings, action.names);
+            intern(strings, action.neededItems);
+            intern(strings, action.consumedItems);
+            intern(strings, action.producedItems);
+            intern(strings, action.message);
+        }
+        Path temporary = image.resolveSibling(image.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            writeSource(out, entitiesFile);
+            writeSource(out, actionsFile);
+            out.writeInt(world.getStringCount());
+            for (int id = 0; id < world.getStringCount(); id++) {
+                writeString(out, world.getString(id));
+            }
+            world.writeColumns(out);
+            out.writeInt(strings.size());
+            for (String value : strings.keySet()) {
+                writeString(out, value);
+            }
+            out.writeInt(actions.size());
+            for (GameAction action : actions) {
+                writeIds(out, strings, action.names);
+                writeIds(out, strings, action.neededItems);
+                writeIds(out, strings, action.consumedItems);
+                writeIds(out, strings, action.producedItems);
+                out.writeInt(idOf(strings, action.message));
+            }
+        }
+        Files.move(temporary, image, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static void writeSource(DataOutputStream out, File source) throws IOException {
+        out.writeLong(source.length());
+        out.writeLong(source.lastModified());
+    }
+
+    private static void writeIds(DataOutputStream out, Map<String, Integer> strings, String[] values) throws IOException {
+        out.writeInt(values.length);
+        for (String value : values) {
+            out.writeInt(strings.get(value));
+        }
+    }
+
+    private static void intern(Map<String, Integer> strings, String... values) {
+        for (String value : values) {
+            if (value != null) {
+                strings.putIfAbsent(value, strings.size());
+            }
+        }
+    }
+
+    private static int idOf(Map<String, Integer> strings, String value) {
+        return value == null ? WorldStore.NONE : strings.get(value);
+    }
+
+    /**
+    * Maps an image and reads its world and actions. Every count is checked against what is left of the
+    * file before anything is allocated for it, so a corrupt image is rejected rather than exhausting memory.
+    *
+    * @return The image, or {@code null} if it is missing, unreadable, corrupt, of another version or
+    * compiled from other versions of the source files.
+    */
+    public static WorldImage read(Path image, File entitiesFile, File actionsFile) {
+        if (!Files.isRegularFile(image)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(image, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION
+                    || !isSameSource(buffer, entitiesFile) || !isSameSource(buffer, actionsFile)) {
+                return null;
+            }
+            WorldStore world = new WorldStore();
+            StringDecoder worldStrings = new StringDecoder(buffer);
+            for (int i = readCount(buffer, Integer.BYTES); i > 0; i--) {
+                world.addString(worldStrings.next());
+            }
+            int handleCount = readCount(buffer, 0);
+            int edgeCount = readCount(buffer, 0);
+            if ((long) handleCount * WorldStore.HANDLE_BYTES + (long) edgeCount * WorldStore.PATH_BYTES
+                    + 2 * Integer.BYTES > buffer.remaining()) {
+                return null;
+            }
+            world.readColumns(buffer, handleCount, edgeCount);
+            String[] strings = new String[readCount(buffer, Integer.BYTES)];
+            StringDecoder actionStrings = new StringDecoder(buffer);
+            for (int i = 0; i < strings.length; i++) {
+                strings[i] = actionStrings.next();
+            }
+            int actionCount = readCount(buffer, 5 * Integer.BYTES);
+            List<GameAction> actions = new ArrayList<>(actionCount);
+            for (int i = 0; i < actionCount; i++) {
+                actions.add(new GameAction(readNames(buffer, strings), readNames(buffer, strings),
+                        readNames(buffer, strings), readNames(buffer, strings), stringAt(strings, buffer.getInt())));
+            }
+            return new WorldImage(world, actions);
+        } catch (IOException | BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static boolean isSameSource(ByteBuffer buffer, File source) {
+        long length = buffer.getLong();
+        long lastModified = buffer.getLong();
+        return length == source.length() && lastModified == source.lastModified();
+    }
+
+    /**
+    * Reads a count of items taking at least {@code bytesEach} bytes apiece.
+    *
+    * @throws IllegalArgumentException If the count is negative or there are not enough bytes left for it.
+    */
+    private static int readCount(ByteBuffer buffer, int bytesEach) {
+        int count = buffer.getInt();
+        if (count < 0 || (long) count * bytesEach > buffer.remaining()) {
+            throw new IllegalArgumentException("Count " + count + " exceeds the image");
+        }
+        return count;
+    }
+
+    /** Decodes length-prefixed UTF-8 strings through one scratch array instead of one array per string. */
+    private static final class StringDecoder {
+        private final ByteBuffer buffer;
+        private byte[] scratch;
+
+        StringDecoder(ByteBuffer buffer) {
+            this.buffer = buffer;
+            this.scratch = new byte[64];
+        }
+
+        String next() {
+            int length = readCount(buffer, 1);
+            if (length > scratch.length) {
+                scratch = new byte[Math.max(length, scratch.length * 2)];
+            }
+            buffer.get(scratch, 0, length);
+            return new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+    }
+
+    private static String[] readNames(ByteBuffer buffer, String[] strings) {
+        String[] names = new String[readCount(buffer, Integer.BYTES)];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = strings[buffer.getInt()];
+        }
+        return names;
+    }
+
+    private static String stringAt(String[] strings, int id) {
+        return id == WorldStore.NONE ? null : strings[id];
+    }
+}
@@ -0,0 +1,57 @@
+package edu.uob;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import javax.xml.stream.XMLStreamException;
+
+/**
+* Reads the world a server starts with. A fresh {@link WorldImage} is used when there is one; otherwise the
+* entities and actions files, which do not depend on each other, are parsed at the same time and only meet
+* in {@link Game#initGame}. Every phase is recorded in the given {@link StartupTimings}.
+*/
+public final class WorldLoader {
+    private WorldLoader() {
+    }
+
+    public static WorldImage load(File entitiesFile, File actionsFile, StartupTimings timings)
+            throws IOException, GameException, XMLStreamException {
+        long start = System.nanoTime();
+        WorldImage image = WorldImage.read(WorldImage.pathFor(entitiesFile), entitiesFile, actionsFile);
+        timings.record("image", start);
+        if (image != null) {
+            return image;
+        }
+        CompletableFuture<List<GameAction>> actions = CompletableFuture.supplyAsync(() -> {
+            long actionsStart = System.nanoTime();
+            try {
+                return ActionsLoader.load(actionsFile);
+            } catch (IOException | XMLStreamException e) {
+                throw new CompletionException(e);
+            } finally {
+                timings.record("actions", actionsStart);
+            }
+        });
+        long entitiesStart = System.nanoTime();
+        WorldStore world;
+        try {
+            world = EntitiesLoader.load(entitiesFile);
+        } finally {
+            timings.record("entities", entitiesStart);
+        }
+        try {
+            return new WorldImage(world, actions.join());
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException ioe) {
+                throw ioe;
+            }
+            if (e.getCause() instanceof XMLStreamException xse) {
+                throw xse;
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,801 @@
+package edu.uob;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import edu.uob.GameException.NoLocationFoundToAddPathException;
+
+/**
+* The world of a running game in struct-of-arrays form. Every location, entity and player is a dense int
+* handle, names and descriptions live in one paged string table, and everything else about a handle
+* is a slot in a primitive column: its kind, its container, its place in its container's contents and,
+* for players, its health. A million-entity world is a few dozen flat arrays rather than millions of
+* small objects.
+*
+* <p>Contents are intrusive doubly linked lists threaded through the {@code nextContent}/{@code
+* prevContent} columns, so moving a handle between containers is constant time and contents keep their
+* arrival order. Paths are a singly linked edge list per location. Players are not linked into their
+* location's contents, only their container is set: players join outside any location lock, and the
+* players in a location are tracked by its {@link PlayerPresence} instead.
+*
+* <p>{@link GameEntity} and its subclasses are views over one handle, made on first use by {@link
+* #view(int)} and kept so every handle has exactly one. Columns are split into fixed-size pages, so
+* adding a handle never moves the slots other threads are reading and writing. Adding handles, strings
+* and paths is synchronized; moves and path changes are guarded by the location locks, as the game
+* state always was.
+*/
+public final class WorldStore {
+    public static final int NONE = -1;
+    private static final EntityType[] KINDS = EntityType.values();
+    private static final int PAGE_BITS = 10;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+    private static final byte SHARED = 1;
+    /** Bytes {@link #writeColumns} writes per handle and per path. */
+    static final int HANDLE_BYTES = 9 * Integer.BYTES + 1;
+    static final int PATH_BYTES = 2 * Integer.BYTES;
+
+    private final StringColumn strings;
+    private volatile int[] nameTable;
+    private int nameCount;
+    private final IntColumn locationByName;
+    private final IntColumn entityByName;
+    private final ByteColumn sharedNames;
+
+    private volatile int size;
+    private final IntColumn names;
+    private final IntColumn descriptions;
+    private final ByteColumn kinds;
+    private final IntColumn containers;
+    private final IntColumn firstContent;
+    private final IntColumn lastContent;
+    private final IntColumn nextContent;
+    private final IntColumn prevContent;
+    private final IntColumn firstPath;
+    private final IntColumn health;
+    private final ViewColumn views;
+
+    private int pathCount;
+    private int freePath;
+    private final IntColumn pathTargets;
+    private final IntColumn nextPath;
+
+    private int start;
+    private int storeroom;
+
+    public WorldStore() {
+        this.strings = new StringColumn();
+        this.nameTable = new int[32];
+        this.locationByName = new IntColumn(NONE);
+        this.entityByName = new IntColumn(NONE);
+        this.sharedNames = new ByteColumn();
+        this.names = new IntColumn(NONE);
+        this.descriptions = new IntColumn(NONE);
+        this.kinds = new ByteColumn();
+        this.containers = new IntColumn(NONE);
+        this.firstContent = new IntColumn(NONE);
+        this.lastContent = new IntColumn(NONE);
+        this.nextContent = new IntColumn(NONE);
+        this.prevContent = new IntColumn(NONE);
+        this.firstPath = new IntColumn(NONE);
+        this.health = new IntColumn(0);
+        this.views = new ViewColumn();
+        this.pathTargets = new IntColumn(NONE);
+        this.nextPath = new IntColumn(NONE);
+        this.freePath = NONE;
+        this.start = NONE;
+        this.storeroom = NONE;
+    }
+
+    /** Adds a location; the first one added is the start and one named "storeroom" is the storeroom. */
+    public synchronized int addLocation(String name, String description) {
+        boolean isStoreroom = EntityType.parse(name) == EntityType.STORAGE;
+        int handle = allocate(isStoreroom ? EntityType.STORAGE : EntityType.LOCATION, name, description);
+        if (start == NONE) {
+            start = handle;
+        }
+        if (isStoreroom) {
+            storeroom = handle;
+        }
+        return handle;
+    }
+
+    /**
+    * Adds an artefact, furniture or character to a location. Other kinds are ignored.
+    *
+    * @return The new handle, or {@link #NONE} if nothing was added.
+    */
+    public synchronized int addEntity(EntityType type, String name, String description, int location) {
+        if (type != EntityType.ARTEFACT && type != EntityType.FURNITURE && type != EntityType.CHARACTER) {
+            return NONE;
+        }
+        int handle = allocate(type, name, description);
+        link(handle, location);
+        return handle;
+    }
+
+    /** Adds a player in a location with full health. Players get their own names, apart from entities. */
+    public synchronized int addPlayer(String name, int location) {
+        int handle = allocate(EntityType.PLAYER, name, "A player named: " + name);
+        health.set(handle, 3);
+        containers.set(handle, location);
+        return handle;
+    }
+
+    /** Opens a path between two locations given by name, exactly as spelled. */
+    public void addPath(String from, String to) throws NoLocationFoundToAddPathException {
+        int fromHandle = locationOf(from);
+        if (fromHandle == NONE || getKind(fromHandle) != EntityType.LOCATION) {
+            throw new NoLocationFoundToAddPathException(from);
+        }
+        int toHandle = locationOf(to);
+        if (toHandle == NONE || getKind(toHandle) != EntityType.LOCATION) {
+            throw new NoLocationFoundToAddPathException(to);
+        }
+        addPath(fromHandle, toHandle);
+    }
+
+    /** Opens a path unless it is already open, reusing the slot of a closed one if there is any. */
+    public synchronized void addPath(int from, int to) {
+        for (int edge = firstPath.get(from); edge != NONE; edge = nextPath.get(edge)) {
+            if (pathTargets.get(edge) == to) {
+                return;
+            }
+        }
+        int edge = freePath;
+        if (edge == NONE) {
+            edge = pathCount++;
+            pathTargets.ensure(pathCount);
+            nextPath.ensure(pathCount);
+        } else {
+            freePath = nextPath.get(edge);
+        }
+        pathTargets.set(edge, to);
+        nextPath.set(edge, firstPath.get(from));
+        firstPath.set(from, edge);
+    }
+
+    /**
+    * Closes one path. Its slot goes on a free list threaded through {@code nextPath}, so paths opened and
+    * closed over and over by actions reuse the same slots instead of growing the edge columns.
+    */
+    public synchronized boolean removePath(int from, int to) {
+        int previous = NONE;
+        for (int edge = firstPath.get(from); edge != NONE; edge = nextPath.get(edge)) {
+            if (pathTargets.get(edge) == to) {
+                if (previous == NONE) {
+                    firstPath.set(from, nextPath.get(edge));
+                } else {
+                    nextPath.set(previous, nextPath.get(edge));
+                }
+                pathTargets.set(edge, NONE);
+                nextPath.set(edge, freePath);
+                freePath = edge;
+                return true;
+            }
+            previous = edge;
+        }
+        return false;
+    }
+
+    /**
+    * Moves a handle to the end of another container's contents, or out of the world with {@link #NONE}.
+    * A player only changes container, since players are not part of any contents.
+    */
+    public void move(int handle, int container) {
+        if (getKind(handle) == EntityType.PLAYER) {
+            containers.set(handle, container);
+            return;
+        }
+        unlink(handle);
+        link(handle, container);
+    }
+
+    private int allocate(EntityType kind, String name, String description) {
+        int handle = size;
+        ensureHandles(handle + 1);
+        names.set(handle, kind == EntityType.PLAYER ? append(name) : intern(name));
+        descriptions.set(handle, description == null ? NONE : append(description));
+        kinds.set(handle, (byte) kind.ordinal());
+        size = handle + 1;
+        if (kind != EntityType.PLAYER) {
+            index(handle);
+        }
+        return handle;
+    }
+
+    private void ensureHandles(int capacity) {
+        names.ensure(capacity);
+        descriptions.ensure(capacity);
+        kinds.ensure(capacity);
+        containers.ensure(capacity);
+        firstContent.ensure(capacity);
+        lastContent.ensure(capacity);
+        nextContent.ensure(capacity);
+        prevContent.ensure(capacity);
+        firstPath.ensure(capacity);
+        health.ensure(capacity);
+        views.ensure(capacity);
+    }
+
+    /** Registers a location or entity under its name; the first one added under a name keeps it. */
+    private void index(int handle) {
+        int name = names.get(handle);
+        locationByName.ensure(name + 1);
+        entityByName.ensure(name + 1);
+        sharedNames.ensure(name + 1);
+        // Every registered name has a location or an entity, so this is its first handle
+        if (locationByName.get(name) == NONE && entityByName.get(name) == NONE) {
+            insertName(name);
+        }
+        EntityType kind = getKind(handle);
+        if (kind == EntityType.LOCATION || kind == EntityType.STORAGE) {
+            if (locationByName.get(name) == NONE) {
+                locationByName.set(name, handle);
+            }
+        } else if (entityByName.get(name) == NONE) {
+            entityByName.set(name, handle);
+        } else {
+            sharedNames.set(name, SHARED);
+        }
+    }
+
+    /** The id of a location or entity name, reusing it if the name is already registered. */
+    private int intern(String name) {
+        int id = nameId(name);
+        return id == NONE ? append(name) : id;
+    }
+
+    private int append(String value) {
+        strings.add(value);
+        return strings.size() - 1;
+    }
+
+    /**
+    * The string id of a location or entity name, or {@link #NONE}. Names are kept in an open-addressing
+    * table of string id and hash pairs, so the index costs a few ints per name rather than a map entry and
+    * a boxed id, and a probe only touches the string itself when the hashes match.
+    */
+    private int nameId(String name) {
+        int[] table = nameTable;
+        int hash = hash(name);
+        int mask = table.length / 2 - 1;
+        for (int slot = hash & mask; table[2 * slot] != 0; slot = (slot + 1) & mask) {
+            if (table[2 * slot + 1] == hash && name.equals(strings.get(table[2 * slot] - 1))) {
+                return table[2 * slot] - 1;
+            }
+        }
+        return NONE;
+    }
+
+    /** Adds a name's id to the table, keeping it at most half full. Readers see the old table until then. */
+    private void insertName(int id) {
+        int[] table = nameTable;
+        if ((nameCount + 1) * 4 > table.length) {
+            int[] grown = new int[table.length * 2];
+            for (int slot = 0; slot < table.length; slot += 2) {
+                if (table[slot] != 0) {
+                    place(grown, table[slot], table[slot + 1]);
+                }
+            }
+            table = grown;
+        }
+        place(table, id + 1, hash(strings.get(id)));
+        nameCount++;
+        nameTable = table;
+    }
+
+    private static void place(int[] table, int entry, int hash) {
+        int mask = table.length / 2 - 1;
+        int slot = hash & mask;
+        while (table[2 * slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        table[2 * slot] = entry;
+        table[2 * slot + 1] = hash;
+    }
+
+    /** Scrambles the string hash, since names like "door1", "door2" hash to neighbouring values. */
+    private static int hash(String name) {
+        int hash = name.hashCode() * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    private void link(int handle, int container) {
+        containers.set(handle, container);
+        nextContent.set(handle, NONE);
+        prevContent.set(handle, NONE);
+        if (container == NONE) {
+            return;
+        }
+        int last = lastContent.get(container);
+        if (last == NONE) {
+            firstContent.set(container, handle);
+        } else {
+            nextContent.set(last, handle);
+            prevContent.set(handle, last);
+        }
+        lastContent.set(container, handle);
+    }
+
+    private void unlink(int handle) {
+        int container = containers.get(handle);
+        if (container == NONE) {
+            return;
+        }
+        int previous = prevContent.get(handle);
+        int next = nextContent.get(handle);
+        if (previous == NONE) {
+            firstContent.set(container, next);
+        } else {
+            nextContent.set(previous, next);
+        }
+        if (next == NONE) {
+            lastContent.set(container, previous);
+        } else {
+            prevContent.set(next, previous);
+        }
+        containers.set(handle, NONE);
+    }
+
+    /** The location or storeroom first added under this name, or {@link #NONE}. */
+    public int locationOf(String name) {
+        int id = nameId(name);
+        return id == NONE ? NONE : locationByName.get(id);
+    }
+
+    /** The artefact, furniture or character first added under this name, or {@link #NONE}. */
+    public int entityOf(String name) {
+        int id = nameId(name);
+        return id == NONE ? NONE : entityByName.get(id);
+    }
+
+    /**
+    * The first artefact, furniture or character of this name in a container, or {@link #NONE}. Goes
+    * straight to the one entity registered under the name, and only walks the contents when several
+    * entities share it.
+    *
+    * @param kind The kind to look for, or {@code null} for any.
+    */
+    public int find(int container, String name, EntityType kind) {
+        int id = nameId(name);
+        if (id == NONE) {
+            return NONE;
+        }
+        if (sharedNames.get(id) != SHARED) {
+            int handle = entityByName.get(id);
+            return handle != NONE && containers.get(handle) == container && isKind(handle, kind) ? handle : NONE;
+        }
+        for (int handle = firstContent.get(container); handle != NONE; handle = nextContent.get(handle)) {
+            if (names.get(handle) == id && isKind(handle, kind)) {
+                return handle;
+            }
+        }
+        return NONE;
+    }
+
+    private boolean isKind(int handle, EntityType kind) {
+        return kind == null || getKind(handle) == kind;
+    }
+
+    /** The location with this name that a path from {@code location} leads to, or {@link #NONE}. */
+    public int findPath(int location, String name) {
+        int id = nameId(name);
+        if (id == NONE) {
+            return NONE;
+        }
+        for (int edge = firstPath.get(location); edge != NONE; edge = nextPath.get(edge)) {
+            if (names.get(pathTargets.get(edge)) == id) {
+                return pathTargets.get(edge);
+            }
+        }
+        return NONE;
+    }
+
+    /**
+    * The one view of a handle, made on first use: a {@link LocationEntity}, {@link Storage}, {@link
+    * ArtefactEntity}, {@link FurnitureEntity}, {@link CharacterEntity} or {@link PlayerEntity} by kind.
+    *
+    * @return The view, or {@code null} for {@link #NONE}.
+    */
+    public GameEntity view(int handle) {
+        if (handle == NONE) {
+            return null;
+        }
+        ViewPage page = views.page(handle);
+        GameEntity view = page.get(handle & PAGE_MASK);
+        if (view != null) {
+            return view;
+        }
+        GameEntity created = switch (getKind(handle)) {
+            case LOCATION -> new LocationEntity(this, handle);
+            case STORAGE -> new Storage(this, handle);
+            case ARTEFACT -> new ArtefactEntity(this, handle);
+            case FURNITURE -> new FurnitureEntity(this, handle);
+            case CHARACTER -> new CharacterEntity(this, handle);
+            case PLAYER -> new PlayerEntity(this, handle);
+        };
+        return page.compareAndSet(handle & PAGE_MASK, null, created) ? created : page.get(handle & PAGE_MASK);
+    }
+
+    /** The names of every location and entity, which are what commands can refer to. */
+    public List<String> getSubjectNames() {
+        List<String> subjects = new ArrayList<>();
+        int count = size;
+        for (int handle = 0; handle < count; handle++) {
+            if (getKind(handle) != EntityType.PLAYER) {
+                subjects.add(getName(handle));
+            }
+        }
+        return subjects;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getStart() {
+        return start;
+    }
+
+    public int getStoreroom() {
+        return storeroom;
+    }
+
+    public String getName(int handle) {
+        return strings.get(names.get(handle));
+    }
+
+    public String getDescription(int handle) {
+        int description = descriptions.get(handle);
+        return description == NONE ? null : strings.get(description);
+    }
+
+    public EntityType getKind(int handle) {
+        return KINDS[kinds.get(handle)];
+    }
+
+    public int getContainer(int handle) {
+        return containers.get(handle);
+    }
+
+    public int getHealth(int player) {
+        return health.get(player);
+    }
+
+    public void setHealth(int player, int level) {
+        health.set(player, level);
+    }
+
+    /** The handles in a container, in the order they arrived. */
+    public int[] getContents(int container) {
+        int count = 0;
+        for (int handle = firstContent.get(container); handle != NONE; handle = nextContent.get(handle)) {
+            count++;
+        }
+        int[] contents = new int[count];
+        int i = 0;
+        for (int handle = firstContent.get(container); handle != NONE; handle = nextContent.get(handle)) {
+            contents[i++] = handle;
+        }
+        return contents;
+    }
+
+    /** The locations reachable from a location, in the order the paths were opened. */
+    public int[] getPaths(int location) {
+        int count = 0;
+        for (int edge = firstPath.get(location); edge != NONE; edge = nextPath.get(edge)) {
+            count++;
+        }
+        int[] paths = new int[count];
+        int i = count;
+        for (int edge = firstPath.get(location); edge != NONE; edge = nextPath.get(edge)) {
+            paths[--i] = pathTargets.get(edge);
+        }
+        return paths;
+    }
+
+    /** Number of slots in the edge columns, open paths and reusable closed ones together. */
+    int getPathSlotCount() {
+        return pathCount;
+    }
+
+    int getStringCount() {
+        return strings.size();
+    }
+
+    String getString(int id) {
+        return strings.get(id);
+    }
+
+    /** Appends a string read from an image, which gets the same id it had in the store that wrote it. */
+    synchronized void addString(String value) {
+        append(value);
+    }
+
+    /**
+    * Writes every handle and path column as it is, for {@link WorldImage}. Names and descriptions are ids
+    * in this store's string table, which has to be written alongside.
+    */
+    synchronized void writeColumns(DataOutputStream out) throws IOException {
+        out.writeInt(size);
+        out.writeInt(pathCount);
+        out.writeInt(start);
+        out.writeInt(storeroom);
+        for (IntColumn column : handleColumns()) {
+            column.write(out, size);
+        }
+        pathTargets.write(out, pathCount);
+        nextPath.write(out, pathCount);
+        kinds.write(out, size);
+    }
+
+    /**
+    * Reads the columns {@link #writeColumns} wrote into a store holding the same string table, copying
+    * each page straight out of the buffer, then rebuilds the name index. The caller has read the two
+    * counts and checked them against the buffer.
+    *
+    * @throws IllegalArgumentException If a column refers to a handle, string or kind that does not exist,
+    * or the content and path lists are not well formed.
+    */
+    synchronized void readColumns(ByteBuffer buffer, int handleCount, int edgeCount) {
+        start = check(buffer.getInt(), handleCount);
+        storeroom = check(buffer.getInt(), handleCount);
+        ensureHandles(handleCount);
+        for (IntColumn column : handleColumns()) {
+            column.read(buffer, handleCount);
+        }
+        pathTargets.ensure(edgeCount);
+        nextPath.ensure(edgeCount);
+        pathTargets.read(buffer, edgeCount);
+        nextPath.read(buffer, edgeCount);
+        kinds.read(buffer, handleCount);
+        for (int edge = 0; edge < edgeCount; edge++) {
+            check(pathTargets.get(edge), handleCount);
+            check(nextPath.get(edge), edgeCount);
+        }
+        for (int handle = 0; handle < handleCount; handle++) {
+            if (kinds.get(handle) < 0 || kinds.get(handle) >= KINDS.length || names.get(handle) == NONE) {
+                throw new IllegalArgumentException("Handle " + handle + " is corrupt");
+            }
+            check(names.get(handle), strings.size());
+            check(descriptions.get(handle), strings.size());
+            for (IntColumn column : new IntColumn[] {containers, firstContent, lastContent, nextContent, prevContent}) {
+                check(column.get(handle), handleCount);
+            }
+            check(firstPath.get(handle), edgeCount);
+        }
+        boolean[] linkedEdges = checkLinks(handleCount, edgeCount);
+        pathCount = edgeCount;
+        freePath = NONE;
+        // Slots of closed paths are written as they are; collect them into the free list again
+        for (int edge = edgeCount - 1; edge >= 0; edge--) {
+            if (!linkedEdges[edge]) {
+                nextPath.set(edge, freePath);
+                freePath = edge;
+            }
+        }
+        size = handleCount;
+        for (int handle = 0; handle < handleCount; handle++) {
+            if (getKind(handle) != EntityType.PLAYER) {
+                index(handle);
+            }
+        }
+    }
+
+    /**
+    * Walks every content and path list of a read image once. Each handle and each edge may be in at most
+    * one list and only once, so a cycle or two lists sharing a tail is caught within {@code handleCount}
+    * and {@code edgeCount} steps overall instead of making {@link #getContents} or {@link #getPaths} loop.
+    *
+    * @return Which edges are in a path list; the others are the slots of closed paths.
+    */
+    private boolean[] checkLinks(int handleCount, int edgeCount) {
+        boolean[] linked = new boolean[handleCount];
+        boolean[] linkedEdges = new boolean[edgeCount];
+        for (int container = 0; container < handleCount; container++) {
+            int previous = NONE;
+            for (int handle = firstContent.get(container); handle != NONE; handle = nextContent.get(handle)) {
+                if (linked[handle] || containers.get(handle) != container || prevContent.get(handle) != previous) {
+                    throw new IllegalArgumentException("Contents of " + container + " are corrupt");
+                }
+                linked[handle] = true;
+                previous = handle;
+            }
+            if (lastContent.get(container) != previous) {
+                throw new IllegalArgumentException("Contents of " + container + " are corrupt");
+            }
+            for (int edge = firstPath.get(container); edge != NONE; edge = nextPath.get(edge)) {
+                if (linkedEdges[edge]) {
+                    throw new IllegalArgumentException("Paths of " + container + " are corrupt");
+                }
+                linkedEdges[edge] = true;
+            }
+        }
+        return linkedEdges;
+    }
+
+    private IntColumn[] handleColumns() {
+        return new IntColumn[] {names, descriptions, containers, firstContent, lastContent, nextContent, prevContent,
+                firstPath, health};
+    }
+
+    private static int check(int reference, int count) {
+        if (reference < NONE || reference >= count) {
+            throw new IllegalArgumentException("Reference " + reference + " out of range");
+        }
+        return reference;
+    }
+
+    private static int pageCount(int capacity) {
+        return (capacity + PAGE_SIZE - 1) >>> PAGE_BITS;
+    }
+
+    /** A column of ints in fixed-size pages. Growing it publishes a new page directory. */
+    private static final class IntColumn {
+        private final int initial;
+        private volatile int[][] pages;
+
+        IntColumn(int initial) {
+            this.initial = initial;
+            this.pages = new int[0][];
+        }
+
+        int get(int index) {
+            return pages[index >>> PAGE_BITS][index & PAGE_MASK];
+        }
+
+        void set(int index, int value) {
+            pages[index >>> PAGE_BITS][index & PAGE_MASK] = value;
+        }
+
+        /** Makes room for {@code capacity} slots. Only called with the store locked. */
+        void ensure(int capacity) {
+            int[][] current = pages;
+            if (current.length >= pageCount(capacity)) {
+                return;
+            }
+            int[][] grown = Arrays.copyOf(current, pageCount(capacity));
+            for (int page = current.length; page < grown.length; page++) {
+                grown[page] = new int[PAGE_SIZE];
+                if (initial != 0) {
+                    Arrays.fill(grown[page], initial);
+                }
+            }
+            pages = grown;
+        }
+
+        void write(DataOutputStream out, int count) throws IOException {
+            for (int i = 0; i < count; i++) {
+                out.writeInt(get(i));
+            }
+        }
+
+        /** Fills the first {@code count} slots straight from the buffer, one page at a time. */
+        void read(ByteBuffer buffer, int count) {
+            int[][] current = pages;
+            for (int page = 0; page < pageCount(count); page++) {
+                int length = Math.min(PAGE_SIZE, count - (page << PAGE_BITS));
+                buffer.asIntBuffer().get(current[page], 0, length);
+                buffer.position(buffer.position() + length * Integer.BYTES);
+            }
+        }
+    }
+
+    private static final class ByteColumn {
+        private volatile byte[][] pages;
+
+        ByteColumn() {
+            this.pages = new byte[0][];
+        }
+
+        byte get(int index) {
+            return pages[index >>> PAGE_BITS][index & PAGE_MASK];
+        }
+
+        void set(int index, byte value) {
+            pages[index >>> PAGE_BITS][index & PAGE_MASK] = value;
+        }
+
+        void ensure(int capacity) {
+            byte[][] current = pages;
+            if (current.length >= pageCount(capacity)) {
+                return;
+            }
+            byte[][] grown = Arrays.copyOf(current, pageCount(capacity));
+            for (int page = current.length; page < grown.length; page++) {
+                grown[page] = new byte[PAGE_SIZE];
+            }
+            pages = grown;
+        }
+
+        void write(DataOutputStream out, int count) throws IOException {
+            for (int i = 0; i < count; i++) {
+                out.writeByte(get(i));
+            }
+        }
+
+        void read(ByteBuffer buffer, int count) {
+            byte[][] current = pages;
+            for (int page = 0; page < pageCount(count); page++) {
+                buffer.get(current[page], 0, Math.min(PAGE_SIZE, count - (page << PAGE_BITS)));
+            }
+        }
+    }
+
+    /** The string table, appended to with the store locked and read by anyone. */
+    private static final class StringColumn {
+        private volatile String[][] pages;
+        private volatile int size;
+
+        StringColumn() {
+            this.pages = new String[0][];
+        }
+
+        String get(int id) {
+            return pages[id >>> PAGE_BITS][id & PAGE_MASK];
+        }
+
+        void add(String value) {
+            String[][] current = pages;
+            if (current.length < pageCount(size + 1)) {
+                current = Arrays.copyOf(current, pageCount(size + 1));
+                for (int page = pages.length; page < current.length; page++) {
+                    current[page] = new String[PAGE_SIZE];
+                }
+                pages = current;
+            }
+            current[size >>> PAGE_BITS][size & PAGE_MASK] = value;
+            size++;
+        }
+
+        int size() {
+            return size;
+        }
+    }
+
+    /**
+    * The views made so far. Pages of views are only made once a handle in them is viewed, so a world
+    * nobody looks at holds no views at all.
+    */
+    private final class ViewColumn {
+        private volatile ViewPage[] pages;
+
+        ViewColumn() {
+            this.pages = new ViewPage[0];
+        }
+
+        void ensure(int capacity) {
+            if (pages.length < pageCount(capacity)) {
+                pages = Arrays.copyOf(pages, pageCount(capacity));
+            }
+        }
+
+        ViewPage page(int handle) {
+            ViewPage page = pages[handle >>> PAGE_BITS];
+            if (page != null) {
+                return page;
+            }
+            synchronized (WorldStore.this) {
+                ViewPage[] current = pages;
+                if (current[handle >>> PAGE_BITS] == null) {
+                    current[handle >>> PAGE_BITS] = new ViewPage();
+                }
+                return current[handle >>> PAGE_BITS];
+            }
+        }
+    }
+
+    private static final class ViewPage extends AtomicReferenceArray<GameEntity> {
+        private static final long serialVersionUID = 1L;
+
+        ViewPage() {
+            super(PAGE_SIZE);
+        }
+    }
+}
@@ -1,7 +1,11 @@
 package edu.uob;
 
 import org.junit.jupiter.api.Test;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 import java.io.File;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -11,6 +15,7 @@ import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.NodeList;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.fail;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
@@ -39,4 +44,21 @@ final class ActionsFileTests {
       }
   }
 
+  // The streaming loader reads actions by element name, whatever the whitespace layout
+  @Test
+  void testStreamingLoaderIgnoresLayout() throws Exception {
+      List<GameAction> actions = ActionsLoader.load(new File("config" + File.separator + "basic-actions.xml"));
+      assertEquals(4, actions.size(), "Did not load every basic action");
+      assertEquals("open", actions.get(0).getNames()[0], "First trigger phrase was not 'open'");
+      String compact = "<actions><action><triggers><keyphrase>Chop</keyphrase><keyphrase>cut down</keyphrase></triggers>"
+              + "<subjects><entity>Tree</entity><entity>axe</entity></subjects><consumed><entity>tree</entity></consumed>"
+              + "<narration>You cut down the tree</narration></action></actions>";
+      List<GameAction> loaded = new ArrayList<>();
+      ActionsLoader.load(new ByteArrayInputStream(compact.getBytes(StandardCharsets.UTF_8)), loaded::add);
+      assertEquals(1, loaded.size(), "Compact action was not loaded");
+      GameAction chop = loaded.get(0);
+      assertArrayEquals(new String[] {"chop", "cut down"}, chop.getNames(), "Trigger phrases were not read in order");
+      assertEquals(List.of("tree", "axe", "tree"), chop.getItemNames(), "Missing produced section was not read as empty");
+  }
+
 }
@@ -0,0 +1,194 @@
+package edu.uob;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.io.File;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.ReentrantLock;
+
+class ConcurrencyTests {
+    private static final int ROUNDS = 200;
+
+    private GameServer server;
+
+    @BeforeEach
+    void setup() {
+        File entitiesFile = Paths.get("config" + File.separator + "extended-entities.dot").toAbsolutePath().toFile();
+        File actionsFile = Paths.get("config" + File.separator + "extended-actions.xml").toAbsolutePath().toFile();
+        server = new GameServer(entitiesFile, actionsFile);
+    }
+
+    // Every player repeatedly picks up and drops the same artefact in their own room
+    List<String> runPlayers(String... scripts) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(scripts.length);
+        try {
+            List<Future<List<String>>> results = new ArrayList<>();
+            for (String script : scripts) {
+                results.add(pool.submit(() -> {
+                    List<String> responses = new ArrayList<>();
+                    String[] commands = script.split(";");
+                    for (int i = 0; i < ROUNDS; i++) {
+                        for (String command : commands) {
+                            responses.add(server.dispatchCommand(command).join());
+                        }
+                    }
+                    return responses;
+                }));
+            }
+            List<String> responses = new ArrayList<>();
+            for (Future<List<String>> result : results) {
+                responses.addAll(result.get());
+            }
+            return responses;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    void checkPlayersInDifferentRooms() {
+        server.handleCommand("ann: goto forest");
+        server.handleCommand("bob: get axe");
+        List<String> responses = assertTimeoutPreemptively(Duration.ofMillis(10000), () -> runPlayers(
+                "ann: get key;ann: drop key",
+                "bob: drop axe;bob: get axe",
+                "cid: get coin;cid: drop coin",
+                "dan: look;dan: inv"));
+        for (String response : responses) {
+            assertFalse(response.contains("Something went wrong"), "A command failed while running concurrently");
+        }
+        assertEquals("key", server.handleCommand("ann: get key").replace("You picked up a(an) ", ""),
+                "The key was lost or duplicated by concurrent commands");
+        assertEquals("axe", server.handleCommand("bob: inv"), "The axe was lost or duplicated by concurrent commands");
+    }
+
+    @Test
+    void testStripedPlayersInDifferentRooms() {
+        server.setExecutionMode(ExecutionMode.STRIPED);
+        checkPlayersInDifferentRooms();
+    }
+
+    @Test
+    void testStagedPlayersInDifferentRooms() {
+        server.setExecutionMode(ExecutionMode.STAGED);
+        checkPlayersInDifferentRooms();
+    }
+
+    // Queued commands of one player must run in the order they were dispatched
+    @Test
+    void testQueuedCommandsKeepPlayerOrder() {
+        server.setExecutionMode(ExecutionMode.QUEUED);
+        List<CompletableFuture<String>> gets = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            gets.add(server.dispatchCommand("ann: get potion"));
+            server.dispatchCommand("ann: drop potion");
+            server.dispatchCommand("bob: look");
+        }
+        for (CompletableFuture<String> get : gets) {
+            String response = assertTimeoutPreemptively(Duration.ofMillis(2000), () -> get.join());
+            assertTrue(response.contains("picked up"), "A get overtook the previous drop of the same player");
+        }
+    }
+
+    // Drained mailboxes leave the scheduler, and commands it can no longer run are answered instead of hanging
+    @Test
+    void testQueuedMailboxesRetire() throws Exception {
+        PlayerScheduler scheduler = new PlayerScheduler(Executors.newFixedThreadPool(2), 4);
+        List<CompletableFuture<String>> results = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            String name = "player" + i;
+            results.add(scheduler.submit(name, () -> name));
+        }
+        for (CompletableFuture<String> result : results) {
+            assertTimeoutPreemptively(Duration.ofMillis(2000), () -> result.join());
+        }
+        assertTimeoutPreemptively(Duration.ofMillis(2000), () -> {
+            while (scheduler.getMailboxCount() > 0) {
+                Thread.sleep(1);
+            }
+        });
+        scheduler.shutdown();
+        CompletableFuture<String> rejected = scheduler.submit("ann", () -> "ran");
+        assertEquals(PendingCommand.STOPPED, rejected.getNow(null), "A command was queued on a stopped scheduler");
+        assertEquals(0, scheduler.getMailboxCount(), "A rejected mailbox was kept");
+    }
+
+    @Test
+    void testTickBatchesCommands() {
+        server.setExecutionMode(ExecutionMode.TICK);
+        CompletableFuture<String> get = server.dispatchCommand("ann: get potion");
+        CompletableFuture<String> inv = server.dispatchCommand("ann: inv");
+        String response = assertTimeoutPreemptively(Duration.ofMillis(2000), () -> inv.join());
+        assertTrue(get.isDone(), "Commands of one tick were not released together");
+        assertTrue(response.contains("potion"), "Tick batch did not run commands in arrival order");
+        assertTrue(server.getTickMetrics().getMaxBatchSize() >= 1, "Tick batch size was not recorded");
+    }
+
+    // Stopping the game thread answers what is still queued and everything submitted afterwards
+    @Test
+    void testStagedShutdownAnswersQueued() {
+        StagedEngine engine = new StagedEngine();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<String> running = engine.submit("ann", () -> {
+            started.countDown();
+            assertTimeoutPreemptively(Duration.ofMillis(2000), () -> release.await());
+            return "ran";
+        });
+        assertTimeoutPreemptively(Duration.ofMillis(2000), () -> started.await());
+        CompletableFuture<String> queued = engine.submit("ann", () -> "queued");
+        engine.shutdown();
+        release.countDown();
+        assertEquals("ran", assertTimeoutPreemptively(Duration.ofMillis(2000), () -> running.join()),
+                "The running command was not finished");
+        assertEquals(PendingCommand.STOPPED, assertTimeoutPreemptively(Duration.ofMillis(2000), () -> queued.join()),
+                "A queued command was left waiting");
+        assertEquals(PendingCommand.STOPPED,
+                assertTimeoutPreemptively(Duration.ofMillis(2000), () -> engine.submit("ann", () -> "late").join()),
+                "A command was queued on a stopped engine");
+    }
+
+    // A command that throws is answered with an error without failing the rest of its batch or later ticks
+    @Test
+    void testTickSurvivesFailedCommand() {
+        TickEngine engine = new TickEngine(new ReentrantLock(), 100);
+        try {
+            CompletableFuture<String> before = engine.submit("ann", () -> "before");
+            CompletableFuture<String> failed = engine.submit("ann", () -> {
+                throw new StackOverflowError();
+            });
+            CompletableFuture<String> after = engine.submit("ann", () -> "after");
+            assertEquals(PendingCommand.FAILED, assertTimeoutPreemptively(Duration.ofMillis(2000), () -> failed.join()),
+                    "A failing command was not answered with an error");
+            assertEquals("before", before.join(), "A command that ran lost its response");
+            assertEquals("after", after.join(), "A failing command stopped the rest of its batch");
+            CompletableFuture<String> later = engine.submit("ann", () -> "ran");
+            assertEquals("ran", assertTimeoutPreemptively(Duration.ofMillis(2000), () -> later.join()),
+                    "Ticks stopped after a failed command");
+        } finally {
+            engine.shutdown();
+        }
+    }
+
+    // Stopping the engine answers what it buffered and everything submitted afterwards
+    @Test
+    void testTickShutdownAnswersBuffered() {
+        TickEngine engine = new TickEngine(new ReentrantLock(), 1);
+        CompletableFuture<String> buffered = engine.submit("ann", () -> "ran");
+        engine.shutdown();
+        assertEquals(PendingCommand.STOPPED, buffered.getNow(null), "A buffered command was left waiting");
+        assertEquals(PendingCommand.STOPPED, engine.submit("ann", () -> "ran").getNow(null),
+                "A command was buffered on a stopped engine");
+    }
+}
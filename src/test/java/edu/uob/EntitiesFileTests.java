@@ -1,10 +1,14 @@
 package edu.uob;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import java.util.ArrayList;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.File;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import com.alexmerz.graphviz.Parser;
 import com.alexmerz.graphviz.ParseException;
 import com.alexmerz.graphviz.objects.Graph;
@@ -13,6 +17,8 @@ import com.alexmerz.graphviz.objects.Edge;
 
 import static org.junit.jupiter.api.Assertions.fail;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 final class EntitiesFileTests {
 
@@ -51,4 +57,82 @@ final class EntitiesFileTests {
       }
   }
 
+  // The streaming loader must read the same world as the graphviz parser
+  @Test
+  void testStreamingLoaderMatchesGraphParser() throws Exception {
+      Parser parser = new Parser();
+      try (FileReader reader = new FileReader("config" + File.separator + "extended-entities.dot")) {
+          parser.parse(reader);
+      }
+      ArrayList<Graph> sections = parser.getGraphs().get(0).getSubgraphs();
+      WorldStore world = EntitiesLoader.load(new File("config" + File.separator + "extended-entities.dot"));
+      for (Graph location : sections.get(0).getSubgraphs()) {
+          Node locationDetails = location.getNodes(false).get(0);
+          int handle = world.locationOf(locationDetails.getId().getId().toLowerCase());
+          assertEquals(locationDetails.getAttribute("description"), world.getDescription(handle), "Location description differs");
+          int entities = 0;
+          for (Graph group : location.getSubgraphs()) {
+              entities += group.getNodes(false).size();
+          }
+          assertEquals(entities, world.getContents(handle).length, "Location contents differ");
+      }
+      int paths = 0;
+      for (int handle = 0; handle < world.size(); handle++) {
+          paths += world.getPaths(handle).length;
+      }
+      assertEquals(sections.get(1).getEdges().size(), paths, "Paths differ");
+  }
+
+  // Layout, comments and quoting do not change what the streaming loader reads
+  @Test
+  void testStreamingLoaderIgnoresLayout() throws Exception {
+      String dot = "digraph layout { /* comment */ splines=ortho; node [shape=rect] subgraph locations {"
+              + "subgraph cluster001 { node [shape = \"none\"] Cabin [description=\"A \\\"log\\\" cabin\"]"
+              + "subgraph artefacts { axe [description = \"An axe\"]; \"Gold coin\" [description = \"Shiny\"] } }"
+              + "subgraph cluster002 { forest [description=\"A forest\"] } }\n"
+              + "// paths follow\nsubgraph paths { cabin -> forest -> cabin } }";
+      WorldStore world = EntitiesLoader.load(new StringReader(dot));
+      int cabin = world.locationOf("cabin");
+      assertEquals(cabin, world.getStart(), "First location was not the start");
+      assertEquals("A \"log\" cabin", world.getDescription(cabin), "Escaped quotes were not read");
+      assertEquals(2, world.getContents(cabin).length, "Artefacts were not placed in the cabin");
+      assertEquals("Shiny", world.getDescription(world.entityOf("gold coin")), "Quoted ID was not read");
+      assertEquals(world.locationOf("forest"), world.getPaths(cabin)[0], "Chained path was not read");
+      assertEquals(1, world.getPaths(world.locationOf("forest")).length, "Chained path was not read");
+  }
+
+  // Mixed-case names in the file resolve and move like lower-case ones through commands and actions
+  @Test
+  void testMixedCaseNamesResolveAndMove(@TempDir Path directory) throws Exception {
+      String dot = "digraph layout { subgraph locations {"
+              + "subgraph cluster001 { Cabin [description = \"A log cabin\"]"
+              + " subgraph artefacts { Axe [description = \"A razor sharp axe\"] }"
+              + " subgraph furniture { TrapDoor [description = \"A wooden trapdoor\"] } }"
+              + "subgraph cluster002 { Forest [description = \"A dark forest\"]"
+              + " subgraph artefacts { Key [description = \"A rusty key\"] } }"
+              + "subgraph cluster003 { Cellar [description = \"A dusty cellar\"] }"
+              + "subgraph cluster004 { Storeroom [description = \"Storage\"] } }"
+              + "subgraph paths { Cabin -> Forest; Forest -> Cabin } }";
+      String xml = "<actions><action><triggers><keyphrase>open</keyphrase></triggers>"
+              + "<subjects><entity>TrapDoor</entity><entity>Key</entity></subjects>"
+              + "<consumed><entity>Key</entity></consumed><produced><entity>Cellar</entity></produced>"
+              + "<narration>The trapdoor opens</narration></action></actions>";
+      File entitiesFile = directory.resolve("entities.dot").toFile();
+      File actionsFile = directory.resolve("actions.xml").toFile();
+      Files.writeString(entitiesFile.toPath(), dot);
+      Files.writeString(actionsFile.toPath(), xml);
+      GameServer server = new GameServer(entitiesFile, actionsFile);
+
+      assertTrue(server.handleCommand("simon: get AXE").contains("axe"), "Mixed-case artefact was not picked up");
+      assertTrue(server.handleCommand("simon: goto forest").contains("dark forest"), "Mixed-case path was not followed");
+      server.handleCommand("simon: get key");
+      assertTrue(server.handleCommand("simon: inv").contains("key"), "Mixed-case key was not picked up");
+      server.handleCommand("simon: goto Cabin");
+      server.handleCommand("simon: drop Key");
+      assertTrue(server.handleCommand("simon: look").contains("rusty key"), "Dropped key was not in the cabin");
+      server.handleCommand("simon: get kEy");
+      assertEquals("The trapdoor opens", server.handleCommand("simon: open trapdoor"), "Action did not find its entities");
+      assertFalse(server.handleCommand("simon: inv").contains("key"), "Consumed key was still carried");
+      assertTrue(server.handleCommand("simon: goto CELLAR").contains("dusty cellar"), "Produced path did not lead on");
+  }
 }
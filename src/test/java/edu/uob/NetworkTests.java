@@ -0,0 +1,194 @@
+package edu.uob;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Paths;
+import java.time.Duration;
+
+class NetworkTests {
+    private static final char END_OF_TRANSMISSION = 4;
+
+    private GameServer server;
+    private Thread listener;
+    private int port;
+
+    @BeforeEach
+    void setup() throws IOException {
+        File entitiesFile = Paths.get("config" + File.separator + "basic-entities.dot").toAbsolutePath().toFile();
+        File actionsFile = Paths.get("config" + File.separator + "basic-actions.xml").toAbsolutePath().toFile();
+        server = new GameServer(entitiesFile, actionsFile);
+        try (ServerSocket probe = new ServerSocket(0)) {
+            port = probe.getLocalPort();
+        }
+    }
+
+    @AfterEach
+    void teardown() {
+        if (listener != null) {
+            listener.interrupt();
+        }
+    }
+
+    void startServer(ServerMode mode) throws InterruptedException {
+        listener = new Thread(() -> {
+            try {
+                server.listenOn(port, mode, 2);
+            } catch (IOException e) {
+                System.out.println("Test server stopped");
+            }
+        });
+        listener.setDaemon(true);
+        listener.start();
+        // Give the listener a moment to bind before clients connect
+        Thread.sleep(200);
+    }
+
+    String readResponse(BufferedReader reader) throws IOException {
+        StringBuilder response = new StringBuilder();
+        String line = reader.readLine();
+        while (line != null && !line.contains("" + END_OF_TRANSMISSION)) {
+            response.append(line).append("\n");
+            line = reader.readLine();
+        }
+        return response.toString();
+    }
+
+    String sendOneShot(String command) throws IOException {
+        try (Socket socket = new Socket("localhost", port);
+        BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream()))) {
+            writer.write(command + "\n");
+            writer.flush();
+            return readResponse(reader);
+        }
+    }
+
+    // A client that connects but never sends anything must not block other players
+    @Test
+    void testSelectorServerIsNotBlockedByIdleClient() throws Exception {
+        startServer(ServerMode.SELECTOR);
+        try (Socket idle = new Socket("localhost", port)) {
+            String response = assertTimeoutPreemptively(Duration.ofMillis(2000), () -> sendOneShot("simon: look"),
+                    "Server was blocked by an idle connection");
+            assertTrue(response.toLowerCase().contains("log cabin"), "Did not receive look response over the selector server");
+            assertTrue(idle.isConnected(), "Idle connection was dropped");
+        }
+    }
+
+    @Test
+    void testVirtualThreadServerIsNotBlockedByIdleClient() throws Exception {
+        startServer(ServerMode.VIRTUAL);
+        try (Socket idle = new Socket("localhost", port)) {
+            String response = assertTimeoutPreemptively(Duration.ofMillis(2000), () -> sendOneShot("simon: look"),
+                    "Server was blocked by an idle connection");
+            assertTrue(response.toLowerCase().contains("log cabin"), "Did not receive look response over the virtual thread server");
+            assertTrue(idle.isConnected(), "Idle connection was dropped");
+        }
+    }
+
+    void checkSession(ServerMode mode) throws Exception {
+        startServer(mode);
+        try (Socket socket = new Socket("localhost", port);
+        BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream()))) {
+            writer.write(Session.SESSION_PREFIX + "simon\n");
+            writer.flush();
+            assertTrue(readResponse(reader).contains("simon"), "Session was not opened for simon");
+            writer.write("get potion\n");
+            writer.flush();
+            readResponse(reader);
+            writer.write("inv\n");
+            writer.flush();
+            String response = readResponse(reader);
+            assertTrue(response.contains("potion"), "Did not see the potion in the inventory when reusing the session connection");
+        }
+    }
+
+    @Test
+    void testSessionOverVirtualThreadServer() throws Exception {
+        checkSession(ServerMode.VIRTUAL);
+    }
+
+    @Test
+    void testSessionOverSelectorServer() throws Exception {
+        checkSession(ServerMode.SELECTOR);
+    }
+
+    // Several tagged commands written at once must be answered in order with their IDs echoed back
+    @Test
+    void testPipelinedSessionCommands() throws Exception {
+        startServer(ServerMode.SELECTOR);
+        try (Socket socket = new Socket("localhost", port);
+        BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream()))) {
+            writer.write(Session.SESSION_PREFIX + "simon\n#1 get potion\n#2 goto forest\n#3 inv\n");
+            writer.flush();
+            readResponse(reader);
+            assertTrue(readResponse(reader).startsWith("#1\n"), "First pipelined response was not tagged #1");
+            assertTrue(readResponse(reader).startsWith("#2\n"), "Second pipelined response was not tagged #2");
+            String response = readResponse(reader);
+            assertTrue(response.startsWith("#3\n"), "Third pipelined response was not tagged #3");
+            assertTrue(response.contains("potion"), "Pipelined commands were not executed in order");
+        }
+    }
+
+    void checkGateway(ServerMode mode) throws Exception {
+        startServer(mode);
+        try (Socket socket = new Socket("localhost", port);
+        DataInputStream input = new DataInputStream(socket.getInputStream());
+        DataOutputStream output = new DataOutputStream(socket.getOutputStream())) {
+            output.write((GatewayFrame.HANDSHAKE + "\n").getBytes());
+            new GatewayFrame(1, "simon", "get potion").write(output);
+            new GatewayFrame(2, "sion", "inv").write(output);
+            new GatewayFrame(3, "simon", "inv").write(output);
+            output.flush();
+            // Frames of different players may come back in any order, so index them by request ID
+            GatewayFrame[] responses = new GatewayFrame[4];
+            for (int i = 0; i < 3; i++) {
+                GatewayFrame response = GatewayFrame.read(input);
+                responses[response.getRequestId()] = response;
+            }
+            assertEquals("simon", responses[1].getPlayerName(), "Gateway response did not carry the player");
+            assertEquals("sion", responses[2].getPlayerName(), "Gateway response did not carry the player");
+            assertFalse(responses[2].getPayload().contains("potion"), "Potion showed up in the wrong player's inventory");
+            assertTrue(responses[3].getPayload().contains("potion"), "Gateway commands of one player were not applied to the same player");
+        }
+    }
+
+    @Test
+    void testGatewayOverVirtualThreadServer() throws Exception {
+        checkGateway(ServerMode.VIRTUAL);
+    }
+
+    @Test
+    void testGatewayOverSelectorServer() throws Exception {
+        checkGateway(ServerMode.SELECTOR);
+    }
+
+    @Test
+    void testGatewayOverSelectorServerWithQueuedExecution() throws Exception {
+        server.setExecutionMode(ExecutionMode.QUEUED);
+        checkGateway(ServerMode.SELECTOR);
+    }
+
+    @Test
+    void testSessionOverSelectorServerWithQueuedExecution() throws Exception {
+        server.setExecutionMode(ExecutionMode.QUEUED);
+        checkSession(ServerMode.SELECTOR);
+    }
+}
@@ -0,0 +1,136 @@
+package edu.uob;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+final class ParserTests {
+
+  List<String> findTriggers(TriggerMatcher matcher, String text) {
+      return matcher.findTriggers(text).stream().map(TriggerMatcher.Match::getTrigger).toList();
+  }
+
+  // Multi-word triggers must win over shorter triggers starting at the same word
+  @Test
+  void testTriggerMatcherPrefersLongestTrigger() {
+      TriggerMatcher matcher = new TriggerMatcher(List.of("knock", "knock down", "down", "open"));
+      assertEquals(List.of("knock down", "open"), findTriggers(matcher, "please knock down and open the door"),
+              "Did not resolve overlapping triggers leftmost-longest");
+  }
+
+  // Triggers only count on word boundaries, like \b in the old regular expressions
+  @Test
+  void testTriggerMatcherRespectsWordBoundaries() {
+      TriggerMatcher matcher = new TriggerMatcher(List.of("cut", "cut down", "hit"));
+      assertEquals(List.of(), findTriggers(matcher, "cutdown the white tree"), "Matched a trigger inside a longer word");
+      assertEquals(List.of("cut"), findTriggers(matcher, "tree,cut!"), "Did not match a trigger next to punctuation");
+      assertEquals(List.of("cut down"), findTriggers(matcher, "cut down"), "Did not match a trigger spanning the whole text");
+  }
+
+  // Tokens resolve to the same interned IDs as the names they spell, commands included
+  @Test
+  void testParserProducesInternedIds() throws Exception {
+      Vocabulary vocabulary = new Vocabulary(List.of("chop", "cut down"), List.of("tree", "axe", "forest"), List.of("log"));
+      GameParser parser = new GameParser();
+      parser.parseCommand(vocabulary, "Simon: please CUT DOWN the\ttree  with axe");
+      assertEquals(1, parser.getActionCount(), "Did not find exactly one trigger");
+      assertEquals(vocabulary.idOf("cut down"), parser.getActionIds()[0], "Trigger was not resolved to its ID");
+      assertEquals(vocabulary.idOf("tree"), parser.getSubjectIds()[0], "Subject was not resolved to its ID");
+      assertEquals(vocabulary.idOf("axe"), parser.getSubjectIds()[1], "Subject was not resolved to its ID");
+      assertEquals(Vocabulary.NOT_FOUND, vocabulary.idOf("with"), "Interned a word that is not in the game");
+
+      parser = new GameParser();
+      parser.parseCommand(vocabulary, "simon", "goto forest");
+      assertEquals(CmdType.GOTO, parser.getCommandType(), "Command keyword was not resolved");
+      assertEquals("forest", parser.getSubjectNames()[0], "Subject name was not kept");
+      assertFalse(vocabulary.isValidSubject(vocabulary.idOf("log")), "Action-only entity became a valid subject");
+  }
+
+  // Parsing straight from a buffer must give the same result as parsing the decoded line
+  @Test
+  void testParserReadsFromBuffer() throws Exception {
+      Vocabulary vocabulary = new Vocabulary(List.of("chop", "cut down"), List.of("tree", "axe"), List.of());
+      ByteBuffer buffer = ByteBuffer.wrap("Simon: Chop the TREE with axe".getBytes(StandardCharsets.UTF_8));
+      GameParser parser = new GameParser();
+      parser.parseCommand(vocabulary, buffer);
+      GameParser expected = new GameParser();
+      expected.parseCommand(vocabulary, "Simon: Chop the TREE with axe");
+      assertEquals("simon", parser.getPlayerName(), "Player name was not lower-cased");
+      assertArrayEquals(expected.getActionIds(), parser.getActionIds(), "Buffer and String parsing found different triggers");
+      assertArrayEquals(expected.getSubjectIds(), parser.getSubjectIds(), "Buffer and String parsing found different subjects");
+      assertThrows(ParserException.InvalidPlayerNameException.class,
+              () -> new GameParser().parseCommand(vocabulary, ByteBuffer.wrap("S1mon: look".getBytes(StandardCharsets.UTF_8))),
+              "Accepted a player name with a digit");
+  }
+
+  // Repeated commands are served from the cache, but never across vocabularies
+  @Test
+  void testParseCacheReusesShapes() throws Exception {
+      Vocabulary vocabulary = new Vocabulary(List.of("chop"), List.of("tree", "axe"), List.of());
+      ParseCache cache = new ParseCache(64);
+      new GameParser(cache).parseCommand(vocabulary, "simon", "chop tree");
+      GameParser parser = new GameParser(cache);
+      parser.parseCommand(vocabulary, "sion", "  CHOP tree ");
+      assertEquals(1, cache.getHits(), "Did not hit the cache for the same command");
+      assertArrayEquals(new int[] {vocabulary.idOf("tree")}, parser.getSubjectIds(), "Cached shape lost its subjects");
+      assertEquals("sion", parser.getPlayerName(), "Cached shape kept the first player");
+
+      Vocabulary reloaded = new Vocabulary(List.of("chop", "fell"), List.of("tree", "axe"), List.of());
+      new GameParser(cache).parseCommand(reloaded, "simon", "chop tree");
+      assertEquals(1, cache.getHits(), "Reused a shape parsed against another vocabulary");
+      cache.invalidate();
+      assertEquals(0, cache.size(), "Invalidating did not empty the cache");
+
+      for (int i = 0; i < 200; i++) {
+          new GameParser(cache).parseCommand(vocabulary, "simon", "chop tree " + i);
+      }
+      assertTrue(cache.size() <= 64, "The cache grew past its capacity");
+      assertTrue(cache.getEvictions() > 0, "Evictions were not counted");
+
+      Set<Integer> segments = new HashSet<>();
+      for (String command : List.of("look", "inv", "health", "get axe", "drop axe", "goto forest")) {
+          segments.add(ParseCache.segmentOf(command));
+      }
+      assertTrue(segments.size() > 2, "Short commands all share a few segments");
+  }
+
+  // Thousands of actions sharing a trigger must still resolve to the one that needs the given subjects
+  @Test
+  void testActionIndexMatchesAmongSharedTriggers() throws Exception {
+      List<GameAction> actions = new ArrayList<>();
+      List<String> doors = new ArrayList<>();
+      for (int i = 0; i < 5000; i++) {
+          doors.add("door" + i);
+          actions.add(new GameAction(new String[] {"open", "unlock"}, new String[] {"door" + i, "key"},
+                  new String[0], new String[0], "Opened door " + i));
+      }
+      actions.add(new GameAction(new String[] {"open"}, new String[] {"door42"}, new String[0], new String[0], "Pushed door 42"));
+      List<String> subjects = new ArrayList<>(doors);
+      subjects.add("key");
+      Vocabulary vocabulary = new Vocabulary(List.of("open", "unlock"), subjects, List.of());
+      for (GameAction action : actions) {
+          action.bind(vocabulary);
+      }
+      ActionIndex index = new ActionIndex(actions, vocabulary);
+      int open = vocabulary.idOf("open");
+      int unlock = vocabulary.idOf("unlock");
+      int key = vocabulary.idOf("key");
+      assertEquals("Opened door 4999", index.match(new int[] {open, unlock}, new int[] {vocabulary.idOf("door4999"), key}).getMessage(),
+              "Did not find the only action needing both subjects");
+      assertEquals("Opened door 42", index.match(new int[] {open}, new int[] {vocabulary.idOf("door42"), key}).getMessage(),
+              "Did not rule out the action needing fewer subjects");
+      assertThrows(ActionException.TooManyActionsException.class, () -> index.match(new int[] {open}, new int[] {vocabulary.idOf("door42")}),
+              "Did not detect an ambiguous command");
+      assertThrows(ActionException.NoActionFoundException.class, () -> index.match(new int[] {unlock}, new int[] {}),
+              "Matched an action without any subject");
+  }
+}
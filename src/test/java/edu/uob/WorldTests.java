@@ -0,0 +1,284 @@
+package edu.uob;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+class WorldTests {
+
+    private GameServer server;
+    private Game game;
+
+    @BeforeEach
+    void setup() {
+        File entitiesFile = Paths.get("config" + File.separator + "basic-entities.dot").toAbsolutePath().toFile();
+        File actionsFile = Paths.get("config" + File.separator + "basic-actions.xml").toAbsolutePath().toFile();
+        server = new GameServer(entitiesFile, actionsFile);
+        game = server.game;
+    }
+
+    // Every move, whether by a command or an action, must keep the entity's container up to date
+    @Test
+    void testContainerFollowsEveryMove() {
+        GameEntity key = game.getEntityByName("key");
+        assertSame(game.getLocationByName("forest"), key.getContainer(), "Key did not start in the forest");
+        server.handleCommand("simon: goto forest");
+        server.handleCommand("simon: get key");
+        PlayerEntity simon = game.matchPlayerByName("simon");
+        assertSame(simon, key.getContainer(), "Picked up key was not held by the player");
+        assertEquals(1, simon.getInventoryCount(), "Inventory did not count the picked up key");
+        server.handleCommand("simon: drop key");
+        assertSame(game.getLocationByName("forest"), key.getContainer(), "Dropped key was not back in the forest");
+        assertSame(game.getLocationByName("forest"), game.findMovableEntity("key"), "Index did not find the dropped key");
+        server.handleCommand("simon: get key");
+        server.handleCommand("simon: goto cabin");
+        server.handleCommand("simon: open trapdoor");
+        assertSame(game.getStoreroom(), key.getContainer(), "Consumed key did not end up in the storeroom");
+        assertNull(game.findMovableEntity("key"), "Key in the storeroom still counted as placed in a location");
+    }
+
+    // Looking around a crowded room lists a bounded number of players and counts the rest
+    @Test
+    void testCrowdedRoomLookIsBounded() {
+        int crowd = LookCmd.MAX_LISTED_PLAYERS + 30;
+        for (int i = 0; i < crowd; i++) {
+            server.handleCommand("player " + (char) ('a' + i % 26) + (char) ('a' + i / 26) + ": look");
+        }
+        LocationEntity cabin = game.getStartLocation();
+        assertEquals(crowd, cabin.getPlayers().count(), "Players were not registered in the start location");
+        String response = server.handleCommand("simon: look");
+        assertTrue(response.contains(LookCmd.MAX_LISTED_PLAYERS + " of " + crowd + " other players"),
+                "Look did not summarise the players it left out");
+        server.handleCommand("simon: goto forest");
+        assertEquals(crowd, cabin.getPlayers().count(), "Leaving did not remove the player from the cabin");
+        assertEquals(1, game.getLocationByName("forest").getPlayers().count(), "Player did not arrive in the forest");
+        server.handleCommand("player ab: goto forest");
+        assertTrue(server.handleCommand("simon: look").contains("A player named: player ab"), "Did not see the other player");
+    }
+
+    // The world keeps every handle's container, contents and paths in its columns, and views read them back
+    @Test
+    void testWorldStoreMovesAndLinks() throws Exception {
+        WorldStore world = new WorldStore();
+        int cabin = world.addLocation("cabin", "A log cabin");
+        int forest = world.addLocation("forest", "A dark forest");
+        int storeroom = world.addLocation("storeroom", "Storage for any entities not placed in the game");
+        world.addPath("cabin", "forest");
+        world.addPath("forest", "cabin");
+        int axe = world.addEntity(EntityType.ARTEFACT, "axe", "A razor sharp axe", cabin);
+        int potion = world.addEntity(EntityType.ARTEFACT, "potion", "A bottle of magic potion", cabin);
+        int trapdoor = world.addEntity(EntityType.FURNITURE, "trapdoor", "A wooden trapdoor", cabin);
+        int forestAxe = world.addEntity(EntityType.ARTEFACT, "axe", "A blunt axe", forest);
+        int simon = world.addPlayer("simon", cabin);
+        assertEquals(cabin, world.getStart(), "First location was not the start");
+        assertEquals(storeroom, world.getStoreroom(), "Storeroom was not recognised");
+        assertEquals(axe, world.entityOf("axe"), "Name did not resolve to its first handle");
+        assertEquals(forestAxe, world.find(forest, "axe", EntityType.ARTEFACT), "Shared name was not found in its location");
+        assertEquals(3, world.getHealth(simon), "Player did not start with full health");
+        assertEquals(cabin, world.getContainer(simon), "Player was not placed in the cabin");
+        assertArrayEquals(new int[] {axe, potion, trapdoor}, world.getContents(cabin), "Contents lost their order");
+        world.move(potion, simon);
+        world.move(axe, forest);
+        assertArrayEquals(new int[] {trapdoor}, world.getContents(cabin), "Moved handles were still in the cabin");
+        assertArrayEquals(new int[] {potion}, world.getContents(simon), "Player did not hold the potion");
+        assertEquals(forest, world.getContainer(axe), "Axe did not follow its move");
+        PlayerEntity player = (PlayerEntity) world.view(simon);
+        assertSame(player, world.view(simon), "A handle got a second view");
+        assertTrue(player.hasInventoryByName("potion"), "View did not read the player's contents");
+        world.move(potion, storeroom);
+        assertArrayEquals(new int[0], world.getContents(simon), "Consumed potion was still held");
+        assertEquals(0, player.getInventoryCount(), "View kept a stale inventory");
+        assertArrayEquals(new int[] {forest}, world.getPaths(cabin), "Path from the cabin was not opened");
+        world.addPath(cabin, forest);
+        assertArrayEquals(new int[] {forest}, world.getPaths(cabin), "An open path was opened twice");
+        assertTrue(world.removePath(cabin, forest), "Path was not closed");
+        assertArrayEquals(new int[0], world.getPaths(cabin), "Closed path was still listed");
+        assertEquals("A wooden trapdoor", world.getDescription(trapdoor), "Description was not kept");
+        assertEquals(EntityType.FURNITURE, world.getKind(trapdoor), "Kind was not kept");
+    }
+
+    // Action entities are classified once when the game loads, and unknown ones never change the world
+    @Test
+    void testActionStepsCompileByKind() {
+        WorldStore world = new WorldStore();
+        int cabin = world.addLocation("cabin", "A log cabin");
+        int forest = world.addLocation("forest", "A dark forest");
+        world.addLocation("cellar", "A dusty cellar");
+        world.addEntity(EntityType.ARTEFACT, "key", "A rusty key", cabin);
+        world.addEntity(EntityType.FURNITURE, "trapdoor", "A wooden trapdoor", cabin);
+        world.addEntity(EntityType.ARTEFACT, "log", "A heavy log", forest);
+        GameAction open = new GameAction(new String[] {"open"}, new String[] {"trapdoor", "key"},
+                new String[] {"key"}, new String[] {"cellar", "health"}, "You open the trapdoor");
+        GameAction summon = new GameAction(new String[] {"summon"}, new String[] {"trapdoor", "dragon"},
+                new String[0], new String[] {"ghost"}, "A dragon appears");
+        GameAction conjure = new GameAction(new String[] {"conjure"}, new String[] {"trapdoor"},
+                new String[0], new String[] {"ghost"}, "A ghost appears");
+        GameAction fetch = new GameAction(new String[] {"fetch"}, new String[] {"trapdoor"},
+                new String[0], new String[] {"log"}, "A log rolls in");
+        Game small = new Game();
+        small.initGame(world, List.of(open, summon, conjure, fetch));
+        PlayerEntity simon = small.matchPlayerByName("simon");
+
+        assertEquals(StepType.ENTITY, open.neededSteps[0].getType(), "Furniture was not compiled as an entity");
+        assertSame(small.getEntityByName("key"), open.consumedSteps[0].getEntity(), "Step did not keep its entity");
+        assertEquals(StepType.PATH, open.producedSteps[0].getType(), "Location was not compiled as a path");
+        assertSame(small.getLocationByName("cellar"), open.producedSteps[0].getLocation(), "Step did not keep its location");
+        assertEquals(StepType.HEALTH, open.producedSteps[1].getType(), "Health was not compiled as health");
+        assertEquals(StepType.UNKNOWN, summon.neededSteps[1].getType(), "A missing entity was not unknown");
+        assertEquals(Set.of("dragon", "ghost"), small.getActionSet().getUnknownItems(), "Unknown items were not reported");
+
+        // Opening a path to another location only changes the player's own location
+        assertTrue(open.isLocal(small, simon), "Opening a path to another location was not local");
+        assertFalse(fetch.isLocal(small, simon), "Fetching from another location was local");
+        assertEquals("You open the trapdoor", open.execute(small, simon), "Path action did not run");
+        assertNotNull(small.getStartLocation().getPathByName("cellar"), "Path step did not open the path");
+
+        int paths = small.getStartLocation().getPaths().size();
+        assertFalse(summon.execute(small, simon).equals("A dragon appears"), "Action needing an unknown entity ran");
+        assertFalse(conjure.execute(small, simon).equals("A ghost appears"), "Action producing an unknown entity ran");
+        assertEquals(paths, small.getStartLocation().getPaths().size(), "An unknown step changed the paths");
+        assertEquals(3, simon.getHealthLevel(), "An unknown step changed the player's health");
+    }
+
+    // Paths opened and closed over and over reuse their slots, also after a round trip through an image
+    @Test
+    void testReopenedPathsReuseSlots(@TempDir Path directory) throws Exception {
+        WorldStore world = new WorldStore();
+        int cabin = world.addLocation("cabin", "A log cabin");
+        int forest = world.addLocation("forest", "A dark forest");
+        int cellar = world.addLocation("cellar", "A dusty cellar");
+        world.addPath(cabin, forest);
+        for (int i = 0; i < 1000; i++) {
+            world.addPath(cabin, cellar);
+            assertTrue(world.removePath(cabin, cellar), "Path was not closed");
+        }
+        world.addPath(forest, cabin);
+        assertEquals(2, world.getPathSlotCount(), "Closed paths left their slots unused");
+        assertArrayEquals(new int[] {forest}, world.getPaths(cabin), "A reused slot changed another path");
+        assertArrayEquals(new int[] {cabin}, world.getPaths(forest), "Reopened path was not listed");
+
+        assertTrue(world.removePath(forest, cabin), "Path was not closed");
+        Path imageFile = directory.resolve("world.img");
+        File entitiesFile = directory.resolve("entities.dot").toFile();
+        File actionsFile = directory.resolve("actions.xml").toFile();
+        Files.writeString(entitiesFile.toPath(), "");
+        Files.writeString(actionsFile.toPath(), "");
+        new WorldImage(world, List.of()).write(imageFile, entitiesFile, actionsFile);
+        WorldStore read = WorldImage.read(imageFile, entitiesFile, actionsFile).getWorld();
+        read.addPath(cellar, cabin);
+        assertEquals(2, read.getPathSlotCount(), "A closed slot from the image was not reused");
+        assertArrayEquals(new int[] {cabin}, read.getPaths(cellar), "Path on a reused slot was not listed");
+        assertArrayEquals(new int[] {forest}, read.getPaths(cabin), "A reused slot changed another path");
+    }
+
+    // A compiled image starts the same game as the text files until either file changes
+    @Test
+    void testWorldImageRoundTripAndStaleness(@TempDir Path directory) throws Exception {
+        File entitiesFile = directory.resolve("entities.dot").toFile();
+        File actionsFile = directory.resolve("actions.xml").toFile();
+        Files.copy(Paths.get("config", "extended-entities.dot"), entitiesFile.toPath());
+        Files.copy(Paths.get("config", "extended-actions.xml"), actionsFile.toPath());
+        Path imageFile = WorldImage.pathFor(entitiesFile);
+        WorldImage.compile(entitiesFile, actionsFile, imageFile);
+        WorldImage image = WorldImage.read(imageFile, entitiesFile, actionsFile);
+        assertNotNull(image, "Fresh image was not read");
+        WorldStore loaded = EntitiesLoader.load(entitiesFile);
+        WorldStore world = image.getWorld();
+        assertEquals(loaded.size(), world.size(), "Image lost handles");
+        for (int handle = 0; handle < world.size(); handle++) {
+            assertEquals(loaded.getName(handle), world.getName(handle), "Handle changed name");
+            assertEquals(loaded.getDescription(handle), world.getDescription(handle), "Handle changed description");
+            assertEquals(loaded.getContainer(handle), world.getContainer(handle), "Handle changed container");
+            assertArrayEquals(loaded.getPaths(handle), world.getPaths(handle), "Handle changed paths");
+        }
+        assertEquals(ActionsLoader.load(actionsFile).size(), image.getActions().size(), "Image lost actions");
+        GameServer imageServer = new GameServer(entitiesFile, actionsFile);
+        assertFalse(imageServer.getStartupTimings().hasPhase("entities"), "Server parsed the entities despite the image");
+        byte[] corrupt = Files.readAllBytes(imageFile);
+        // The world's string count follows the magic number, the version and both source stamps
+        ByteBuffer.wrap(corrupt).putInt(40, Integer.MAX_VALUE);
+        Files.write(imageFile, corrupt);
+        assertNull(WorldImage.read(imageFile, entitiesFile, actionsFile), "Image with an impossible count was read");
+        WorldImage.compile(entitiesFile, actionsFile, imageFile);
+        corrupt = Files.readAllBytes(imageFile);
+        int[] contents = world.getContents(world.getStart());
+        int columns = 44;
+        for (int id = 0; id < world.getStringCount(); id++) {
+            columns += Integer.BYTES + world.getString(id).getBytes(StandardCharsets.UTF_8).length;
+        }
+        // Link the last of the start location's contents back to its first, after the four column counts
+        int nextContent = columns + 4 * Integer.BYTES + 5 * world.size() * Integer.BYTES;
+        ByteBuffer.wrap(corrupt).putInt(nextContent + contents[contents.length - 1] * Integer.BYTES, contents[0]);
+        Files.write(imageFile, corrupt);
+        assertNull(WorldImage.read(imageFile, entitiesFile, actionsFile), "Image with a cycle in its contents was read");
+        WorldImage.compile(entitiesFile, actionsFile, imageFile);
+        assertTrue(actionsFile.setLastModified(actionsFile.lastModified() + 2000), "Could not touch the actions file");
+        assertNull(WorldImage.read(imageFile, entitiesFile, actionsFile), "Stale image was still read");
+    }
+
+    // Loading records every phase, and chunked trigger mapping keeps every action of a shared trigger
+    @Test
+    void testParallelLoadingRecordsPhases() {
+        StartupTimings timings = server.getStartupTimings();
+        for (String phase : new String[] {"image", "entities", "actions", "world", "triggers", "vocabulary", "index"}) {
+            assertTrue(timings.hasPhase(phase), "Startup did not record the " + phase + " phase");
+        }
+        WorldStore world = new WorldStore();
+        int cabin = world.addLocation("cabin", "A log cabin");
+        world.addEntity(EntityType.FURNITURE, "door", "A door", cabin);
+        List<GameAction> actions = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            actions.add(new GameAction(new String[] {"open", "unlock" + i}, new String[] {"door"},
+                    new String[0], new String[0], "You open the door " + i));
+        }
+        Game large = new Game();
+        large.initGame(world, actions);
+        assertEquals(5000, large.getActionSet().getActions("open").size(), "Merged trigger map lost actions");
+        assertEquals(5001, large.getActionNames().length, "Merged trigger map lost triggers");
+    }
+
+    // Reloading the actions keeps every player and swaps the new actions in only if they fit the world
+    @Test
+    void testReloadActionsKeepsPlayers(@TempDir Path directory) throws Exception {
+        File entitiesFile = directory.resolve("entities.dot").toFile();
+        File actionsFile = directory.resolve("actions.xml").toFile();
+        Files.copy(Paths.get("config", "basic-entities.dot"), entitiesFile.toPath());
+        Files.copy(Paths.get("config", "basic-actions.xml"), actionsFile.toPath());
+        GameServer reloading = new GameServer(entitiesFile, actionsFile);
+        reloading.handleCommand("simon: get potion");
+        Vocabulary before = reloading.game.getVocabulary();
+        String original = Files.readString(actionsFile.toPath());
+        String hug = "<action><triggers><keyphrase>hug</keyphrase></triggers><subjects><entity>trapdoor</entity></subjects>"
+                + "<consumed></consumed><produced></produced><narration>You hug the trapdoor</narration></action></actions>";
+        Files.writeString(actionsFile.toPath(), original.replace("</actions>", hug));
+        String report = reloading.reloadActions();
+        assertTrue(report.startsWith("Reloaded 5 actions"), "New actions were not loaded");
+        assertTrue(report.endsWith("not in the game: axe"), "Missing entity was not reported");
+        assertTrue(reloading.handleCommand("simon: inv").contains("potion"), "Reload lost the player's inventory");
+        assertEquals("You hug the trapdoor", reloading.handleCommand("simon: hug trapdoor"), "New action did not run");
+        GameParser parser = new GameParser();
+        parser.parseCommand(before, "simon: open trapdoor");
+        assertNotNull(reloading.game.matchAction(before, parser.getActionIds(), parser.getSubjectIds()),
+                "Command parsed before the reload did not match its own actions");
+        Files.writeString(actionsFile.toPath(), original.replace("<keyphrase>open</keyphrase>", "")
+                .replace("<keyphrase>unlock</keyphrase>", ""));
+        assertTrue(reloading.reloadActions().startsWith("Reload rejected: Action 1"), "Unmatchable action was accepted");
+        assertEquals("You hug the trapdoor", reloading.handleCommand("simon: hug trapdoor"), "Rejected reload replaced the actions");
+    }
+}